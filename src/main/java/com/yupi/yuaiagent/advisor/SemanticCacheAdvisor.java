@@ -0,0 +1,277 @@
+package com.yupi.yuaiagent.advisor;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 语义缓存 Advisor
+ * <p>
+ * 把用户问题嵌入成向量，在本地向量索引中查找语义相似、且系统提示词和 Advisor 组合相同的历史问题，
+ * 相似度超过阈值时直接返回缓存的回答，不再调用大模型（也跳过之后的 RAG 检索等 Advisor）。
+ * 顺序排在对话记忆 Advisor 之后，缓存命中时问答仍会写入对话记忆；
+ * 带工具调用、多媒体或模板参数的请求不参与缓存，默认也不缓存依赖上文的追问。缓存条目有过期时间和数量上限。
+ * 知识库预热期间检索结果为空，模型只能给出兜底回答，这段时间发起的请求只查缓存、不写缓存。
+ */
+@Slf4j
+public class SemanticCacheAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    // 排在 MessageChatMemoryAdvisor（HIGHEST_PRECEDENCE + 1000）之后，RAG 和日志 Advisor（0）之前
+    public static final int DEFAULT_ORDER = Ordered.HIGHEST_PRECEDENCE + 2000;
+
+    // 响应元数据中标记缓存命中的键
+    public static final String CACHE_HIT_METADATA_KEY = "semantic_cache_hit";
+
+    // 区分系统提示词的元数据键
+    private static final String NAMESPACE_KEY = "namespace";
+
+    private final VectorStore vectorStore;
+
+    private final double similarityThreshold;
+
+    private final Duration ttl;
+
+    private final int maxEntries;
+
+    // 只缓存没有历史消息的首轮提问，追问的含义依赖上下文
+    private final boolean firstTurnOnly;
+
+    private final int order;
+
+    // 是否允许写入缓存，如知识库是否已就绪
+    private final BooleanSupplier storeCondition;
+
+    // 缓存条目 ID -> 回答
+    private final Map<String, CachedAnswer> answers = new ConcurrentHashMap<>();
+
+    // 按写入顺序记录条目 ID，超出数量上限时淘汰最早的条目
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param vectorStore         保存历史问题的本地向量索引
+     * @param similarityThreshold 命中缓存的最低相似度
+     * @param ttl                 缓存条目的过期时间
+     * @param maxEntries          缓存条目数上限
+     * @param firstTurnOnly       是否只缓存没有历史消息的首轮提问
+     */
+    public SemanticCacheAdvisor(VectorStore vectorStore, double similarityThreshold, Duration ttl, int maxEntries,
+                                boolean firstTurnOnly) {
+        this(vectorStore, similarityThreshold, ttl, maxEntries, firstTurnOnly, () -> true, DEFAULT_ORDER);
+    }
+
+    /**
+     * @param storeCondition 请求开始时为 false 的回答不写入缓存（如知识库尚未预热完成）
+     */
+    public SemanticCacheAdvisor(VectorStore vectorStore, double similarityThreshold, Duration ttl, int maxEntries,
+                                boolean firstTurnOnly, BooleanSupplier storeCondition) {
+        this(vectorStore, similarityThreshold, ttl, maxEntries, firstTurnOnly, storeCondition, DEFAULT_ORDER);
+    }
+
+    public SemanticCacheAdvisor(VectorStore vectorStore, double similarityThreshold, Duration ttl, int maxEntries,
+                                boolean firstTurnOnly, BooleanSupplier storeCondition, int order) {
+        this.vectorStore = vectorStore;
+        this.similarityThreshold = similarityThreshold;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.firstTurnOnly = firstTurnOnly;
+        this.storeCondition = storeCondition;
+        this.order = order;
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        if (!isCacheable(advisedRequest)) {
+            return chain.nextAroundCall(advisedRequest);
+        }
+        String namespace = namespace(advisedRequest);
+        String cached = lookup(advisedRequest.userText(), namespace);
+        if (cached != null) {
+            return cachedResponse(advisedRequest, cached);
+        }
+        // 在调用前判断：请求开始时知识库已就绪，检索才会拿到真实的上下文
+        boolean storable = storeCondition.getAsBoolean();
+        AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
+        if (storable) {
+            store(advisedRequest.userText(), namespace, advisedResponse);
+        }
+        return advisedResponse;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        if (!isCacheable(advisedRequest)) {
+            return chain.nextAroundStream(advisedRequest);
+        }
+        String namespace = namespace(advisedRequest);
+        String cached = lookup(advisedRequest.userText(), namespace);
+        if (cached != null) {
+            return Flux.just(cachedResponse(advisedRequest, cached));
+        }
+        Flux<AdvisedResponse> advisedResponses = chain.nextAroundStream(advisedRequest);
+        if (!storeCondition.getAsBoolean()) {
+            return advisedResponses;
+        }
+        // 流式输出结束后聚合完整回答再写入缓存
+        return new MessageAggregator().aggregateAdvisedResponse(advisedResponses,
+                aggregated -> store(advisedRequest.userText(), namespace, aggregated));
+    }
+
+    public CacheStats getStats() {
+        long total = hits.get() + misses.get();
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), answers.size(),
+                total == 0 ? 0 : (double) hits.get() / total);
+    }
+
+    /**
+     * 带工具调用、多媒体或模板参数的请求（以及开启 firstTurnOnly 时的追问），回答依赖问题之外的上下文，不参与缓存
+     */
+    private boolean isCacheable(AdvisedRequest request) {
+        if (StrUtil.isBlank(request.userText()) || !request.media().isEmpty() || !request.userParams().isEmpty()) {
+            return false;
+        }
+        if (firstTurnOnly && !request.messages().isEmpty()) {
+            return false;
+        }
+        if (!request.functionNames().isEmpty() || !request.functionCallbacks().isEmpty()) {
+            return false;
+        }
+        return !(request.chatOptions() instanceof ToolCallingChatOptions options)
+                || (options.getToolCallbacks().isEmpty() && options.getToolNames().isEmpty());
+    }
+
+    /**
+     * 系统提示词或 Advisor 组合（如是否启用 RAG）不同的请求使用不同的缓存空间
+     */
+    private static String namespace(AdvisedRequest request) {
+        String advisors = request.advisors().stream().map(Advisor::getName).collect(Collectors.joining(","));
+        return SecureUtil.sha256(StrUtil.nullToEmpty(request.systemText()) + "\n" + advisors);
+    }
+
+    private String lookup(String userText, String namespace) {
+        try {
+            List<Document> documents = vectorStore.similaritySearch(SearchRequest.builder()
+                    .query(userText)
+                    .topK(1)
+                    .similarityThreshold(similarityThreshold)
+                    .filterExpression(new FilterExpressionBuilder().eq(NAMESPACE_KEY, namespace).build())
+                    .build());
+            if (!documents.isEmpty()) {
+                CachedAnswer cachedAnswer = answers.get(documents.get(0).getId());
+                if (cachedAnswer != null && !cachedAnswer.isExpired(ttl)) {
+                    hits.incrementAndGet();
+                    log.info("语义缓存命中，相似度 {}：{}", documents.get(0).getScore(), userText);
+                    return cachedAnswer.answer();
+                }
+                if (cachedAnswer != null) {
+                    remove(documents.get(0).getId());
+                }
+            }
+        } catch (Exception e) {
+            // 缓存故障不影响正常对话
+            log.warn("语义缓存查询失败", e);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void store(String userText, String namespace, AdvisedResponse advisedResponse) {
+        ChatResponse response = advisedResponse.response();
+        if (response == null || response.getResult() == null || response.getResult().getOutput().hasToolCalls()) {
+            return;
+        }
+        String answer = response.getResult().getOutput().getText();
+        if (StrUtil.isBlank(answer)) {
+            return;
+        }
+        try {
+            String id = UUID.randomUUID().toString();
+            vectorStore.add(List.of(new Document(id, userText, Map.of(NAMESPACE_KEY, namespace))));
+            answers.put(id, new CachedAnswer(answer, System.currentTimeMillis()));
+            insertionOrder.add(id);
+            // 超出数量上限时淘汰最早写入的条目
+            while (answers.size() > maxEntries) {
+                String eldest = insertionOrder.poll();
+                if (eldest == null) {
+                    break;
+                }
+                remove(eldest);
+                evictions.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.warn("语义缓存写入失败", e);
+        }
+    }
+
+    private void remove(String id) {
+        if (answers.remove(id) != null) {
+            insertionOrder.remove(id);
+            vectorStore.delete(List.of(id));
+        }
+    }
+
+    private static AdvisedResponse cachedResponse(AdvisedRequest advisedRequest, String answer) {
+        AssistantMessage assistantMessage = new AssistantMessage(answer, Map.of(CACHE_HIT_METADATA_KEY, true));
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(assistantMessage)));
+        return new AdvisedResponse(chatResponse, advisedRequest.adviseContext());
+    }
+
+    /**
+     * 缓存的回答
+     */
+    private record CachedAnswer(String answer, long createdAt) {
+
+        boolean isExpired(Duration ttl) {
+            return System.currentTimeMillis() - createdAt > ttl.toMillis();
+        }
+    }
+
+    /**
+     * 缓存统计指标
+     */
+    public record CacheStats(long hits, long misses, long evictions, int size, double hitRate) {
+    }
+}
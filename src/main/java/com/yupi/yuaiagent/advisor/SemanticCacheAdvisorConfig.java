@@ -0,0 +1,47 @@
+package com.yupi.yuaiagent.advisor;
+
+import com.yupi.yuaiagent.rag.OffHeapVectorIndex;
+import com.yupi.yuaiagent.rag.VectorStoreWarmup;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 恋爱大师应用的语义缓存配置
+ * 历史问题保存在内存中的向量索引里，问题嵌入复用带缓存的嵌入模型
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "semantic-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SemanticCacheAdvisorConfig {
+
+    // 命中缓存的最低相似度，过低会把不同的问题当成同一个
+    @Value("${semantic-cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    // 缓存条目的过期时间
+    @Value("${semantic-cache.ttl:1h}")
+    private Duration ttl;
+
+    // 缓存条目数上限
+    @Value("${semantic-cache.max-entries:1000}")
+    private int maxEntries;
+
+    // 只缓存没有历史消息的首轮提问
+    @Value("${semantic-cache.first-turn-only:true}")
+    private boolean firstTurnOnly;
+
+    /**
+     * 恋爱大师知识库预热完成前的回答没有检索上下文，不写入缓存
+     */
+    @Bean
+    public SemanticCacheAdvisor loveAppSemanticCacheAdvisor(EmbeddingModel cachingEmbeddingModel,
+                                                            VectorStoreWarmup vectorStoreWarmup) {
+        OffHeapVectorIndex questionIndex = new OffHeapVectorIndex(cachingEmbeddingModel);
+        return new SemanticCacheAdvisor(questionIndex, similarityThreshold, ttl, maxEntries, firstTurnOnly,
+                () -> vectorStoreWarmup.isReady("loveAppVectorStore"));
+    }
+}
@@ -0,0 +1,208 @@
+package com.yupi.yuaiagent.agent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 智能体执行引擎
+ * <p>
+ * 每次智能体运行都在独立的虚拟线程中执行：每一步都会阻塞等待大模型 HTTP 调用和工具 I/O，
+ * 虚拟线程阻塞时不占用平台线程，也不会挤占公共 ForkJoinPool。
+ * 通过全局并发上限和按租户的并发上限控制同时运行的数量，超出上限的任务排队等待，
+ * 排队数超过上限时直接拒绝；应用关闭时等待运行中的任务结束。
+ * 租户的并发许可按引用计数保存，租户没有排队或运行中的任务时即移除，Map 的大小不超过排队数和运行数之和。
+ */
+@Component
+@Slf4j
+public class AgentExecutionEngine implements DisposableBean {
+
+    /**
+     * 未指定租户时使用的默认租户
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agent-", 0).factory());
+
+    // 全局同时运行的智能体数量上限
+    private final Semaphore globalPermits;
+
+    // 每个租户同时运行的智能体数量上限
+    private final int maxConcurrentRunsPerTenant;
+
+    // 租户 -> 并发许可，只保留有排队或运行中任务的租户
+    private final Map<String, TenantSlot> tenantSlots = new ConcurrentHashMap<>();
+
+    // 最大排队数
+    private final int maxQueueDepth;
+
+    // 关闭时等待运行中任务结束的最长时间
+    private final Duration shutdownTimeout;
+
+    // 统计指标
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AgentExecutionEngine(@Value("${agent.executor.max-concurrent-runs:200}") int maxConcurrentRuns,
+                                @Value("${agent.executor.max-concurrent-runs-per-tenant:5}") int maxConcurrentRunsPerTenant,
+                                @Value("${agent.executor.max-queue-depth:1000}") int maxQueueDepth,
+                                @Value("${agent.executor.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        this.globalPermits = new Semaphore(maxConcurrentRuns, true);
+        this.maxConcurrentRunsPerTenant = maxConcurrentRunsPerTenant;
+        this.maxQueueDepth = maxQueueDepth;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * 提交一次智能体运行
+     *
+     * @param tenantId 租户标识，用于按租户限制并发，应由服务端确定（如认证用户或客户端地址）
+     * @param task     运行任务
+     * @return 任务完成时结束的 Future；排队已满或引擎已关闭时返回以 RejectedExecutionException 失败的 Future
+     */
+    public CompletableFuture<Void> submit(String tenantId, Runnable task) {
+        if (queued.incrementAndGet() > maxQueueDepth) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Agent queue is full (" + maxQueueDepth + ")"));
+        }
+        TenantSlot slot = retain(tenantId);
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    run(tenantId, slot.permits, task);
+                } finally {
+                    release(tenantId);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            release(tenantId);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 当前有排队或运行中任务的租户数
+     */
+    int tenantCount() {
+        return tenantSlots.size();
+    }
+
+    private TenantSlot retain(String tenantId) {
+        return tenantSlots.compute(tenantId, (id, slot) -> {
+            TenantSlot retained = slot != null ? slot : new TenantSlot(new Semaphore(maxConcurrentRunsPerTenant, true));
+            retained.users++;
+            return retained;
+        });
+    }
+
+    /**
+     * 任务结束（此时已归还许可）后减少引用，没有任务引用时移除租户
+     */
+    private void release(String tenantId) {
+        tenantSlots.computeIfPresent(tenantId, (id, slot) -> --slot.users == 0 ? null : slot);
+    }
+
+    /**
+     * 获取执行引擎统计指标
+     */
+    public EngineStats getStats() {
+        return new EngineStats(queued.get(), running.get(), completed.sum(), failed.sum(), rejected.sum());
+    }
+
+    /**
+     * 应用关闭时不再接收新任务，等待运行中的任务结束，超时后中断
+     */
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Agent runs did not finish within {}, interrupting", shutdownTimeout);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(String tenantId, Semaphore tenantSemaphore, Runnable task) {
+        boolean tenantAcquired = false;
+        boolean globalAcquired = false;
+        try {
+            // 先占用租户配额再占用全局配额，避免单个租户的排队任务占满全局配额
+            tenantSemaphore.acquire();
+            tenantAcquired = true;
+            globalPermits.acquire();
+            globalAcquired = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for agent slot", e);
+        } finally {
+            queued.decrementAndGet();
+            if (!globalAcquired && tenantAcquired) {
+                tenantSemaphore.release();
+            }
+        }
+        running.incrementAndGet();
+        try {
+            task.run();
+            completed.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Agent run failed, tenant: {}", tenantId, e);
+            throw e;
+        } finally {
+            running.decrementAndGet();
+            globalPermits.release();
+            tenantSemaphore.release();
+        }
+    }
+
+    /**
+     * 租户的并发许可和引用它的任务数（users 只在 Map 的 compute 中修改）
+     */
+    private static final class TenantSlot {
+
+        private final Semaphore permits;
+
+        private int users;
+
+        TenantSlot(Semaphore permits) {
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * 执行引擎统计指标
+     *
+     * @param queued    正在排队的任务数
+     * @param running   正在运行的任务数
+     * @param completed 已完成的任务数
+     * @param failed    异常结束的任务数
+     * @param rejected  被拒绝的任务数
+     */
+    public record EngineStats(int queued, int running, long completed, long failed, long rejected) {
+    }
+}
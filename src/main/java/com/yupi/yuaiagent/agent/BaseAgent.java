@@ -1,24 +1,28 @@
 package com.yupi.yuaiagent.agent;
 
 import cn.hutool.core.util.StrUtil;
+import com.yupi.yuaiagent.agent.model.AgentContext;
 import com.yupi.yuaiagent.agent.model.AgentState;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 抽象基础代理类，用于管理代理状态和执行流程。
  * <p>
  * 提供状态转换、内存管理和基于步骤的执行循环的基础功能。
  * 子类必须实现step方法。
+ * <p>
+ * 代理实例只保存名称、提示词、大模型客户端等创建后不再变化的配置，可以作为单例在多次运行间共享；
+ * 每次运行的状态、步数和消息上下文都保存在独立的 {@link AgentContext} 中，多个运行可以并发执行。
  */
 @Data
 @Slf4j
@@ -31,18 +35,14 @@ public abstract class BaseAgent {
     private String systemPrompt;
     private String nextStepPrompt;
 
-    // 代理状态
-    private AgentState state = AgentState.IDLE;
-
     // 执行步骤控制
-    private int currentStep = 0;
     private int maxSteps = 10;
 
     // LLM 大模型
     private ChatClient chatClient;
 
-    // Memory 记忆（需要自主维护会话上下文）
-    private List<Message> messageList = new ArrayList<>();
+    // 执行引擎（流式运行时使用，未设置时直接启动虚拟线程运行）
+    private AgentExecutionEngine executionEngine;
 
     /**
      * 运行代理
@@ -52,42 +52,40 @@ public abstract class BaseAgent {
      */
     public String run(String userPrompt) {
         // 1、基础校验
-        if (this.state != AgentState.IDLE) {
-            throw new RuntimeException("Cannot run agent from state: " + this.state);
-        }
         if (StrUtil.isBlank(userPrompt)) {
             throw new RuntimeException("Cannot run agent with empty user prompt");
         }
-        // 2、执行，更改状态
-        this.state = AgentState.RUNNING;
+        // 2、执行，创建本次运行的上下文
+        AgentContext context = new AgentContext();
+        context.setState(AgentState.RUNNING);
         // 记录消息上下文
-        messageList.add(new UserMessage(userPrompt));
+        context.getMessageList().add(new UserMessage(userPrompt));
         // 保存结果列表
         List<String> results = new ArrayList<>();
         try {
             // 执行循环
-            for (int i = 0; i < maxSteps && state != AgentState.FINISHED; i++) {
+            for (int i = 0; i < maxSteps && context.getState() == AgentState.RUNNING; i++) {
                 int stepNumber = i + 1;
-                currentStep = stepNumber;
+                context.setCurrentStep(stepNumber);
                 log.info("Executing step {}/{}", stepNumber, maxSteps);
                 // 单步执行
-                String stepResult = step();
+                String stepResult = step(context);
                 String result = "Step " + stepNumber + ": " + stepResult;
                 results.add(result);
             }
             // 检查是否超出步骤限制
-            if (currentStep >= maxSteps) {
-                state = AgentState.FINISHED;
+            if (context.getCurrentStep() >= maxSteps) {
+                context.setState(AgentState.FINISHED);
                 results.add("Terminated: Reached max steps (" + maxSteps + ")");
             }
             return String.join("\n", results);
         } catch (Exception e) {
-            state = AgentState.ERROR;
+            context.setState(AgentState.ERROR);
             log.error("error executing agent", e);
             return "执行错误" + e.getMessage();
         } finally {
             // 3、清理资源
-            this.cleanup();
+            this.cleanup(context);
         }
     }
 
@@ -98,17 +96,25 @@ public abstract class BaseAgent {
      * @return 执行结果
      */
     public SseEmitter runStream(String userPrompt) {
+        return runStream(userPrompt, AgentExecutionEngine.DEFAULT_TENANT);
+    }
+
+    /**
+     * 运行代理（流式输出）
+     *
+     * @param userPrompt 用户提示词
+     * @param tenantId   租户标识，用于按租户限制并发
+     * @return 执行结果
+     */
+    public SseEmitter runStream(String userPrompt, String tenantId) {
         // 创建一个超时时间较长的 SseEmitter
         SseEmitter sseEmitter = new SseEmitter(300000L); // 5 分钟超时
-        // 使用线程异步处理，避免阻塞主线程
-        CompletableFuture.runAsync(() -> {
+        // 创建本次运行的上下文
+        AgentContext context = new AgentContext();
+        // 在虚拟线程中异步处理，避免阻塞主线程
+        Runnable task = () -> {
             // 1、基础校验
             try {
-                if (this.state != AgentState.IDLE) {
-                    sseEmitter.send("错误：无法从状态运行代理：" + this.state);
-                    sseEmitter.complete();
-                    return;
-                }
                 if (StrUtil.isBlank(userPrompt)) {
                     sseEmitter.send("错误：不能使用空提示词运行代理");
                     sseEmitter.complete();
@@ -116,36 +122,37 @@ public abstract class BaseAgent {
                 }
             } catch (Exception e) {
                 sseEmitter.completeWithError(e);
+                return;
             }
             // 2、执行，更改状态
-            this.state = AgentState.RUNNING;
+            context.setState(AgentState.RUNNING);
             // 记录消息上下文
-            messageList.add(new UserMessage(userPrompt));
+            context.getMessageList().add(new UserMessage(userPrompt));
             // 保存结果列表
             List<String> results = new ArrayList<>();
             try {
-                // 执行循环
-                for (int i = 0; i < maxSteps && state != AgentState.FINISHED; i++) {
+                // 执行循环（连接超时后状态变为 ERROR，循环随之结束）
+                for (int i = 0; i < maxSteps && context.getState() == AgentState.RUNNING; i++) {
                     int stepNumber = i + 1;
-                    currentStep = stepNumber;
+                    context.setCurrentStep(stepNumber);
                     log.info("Executing step {}/{}", stepNumber, maxSteps);
                     // 单步执行
-                    String stepResult = step();
+                    String stepResult = step(context);
                     String result = "Step " + stepNumber + ": " + stepResult;
                     results.add(result);
                     // 输出当前每一步的结果到 SSE
                     sseEmitter.send(result);
                 }
                 // 检查是否超出步骤限制
-                if (currentStep >= maxSteps) {
-                    state = AgentState.FINISHED;
+                if (context.getCurrentStep() >= maxSteps) {
+                    context.setState(AgentState.FINISHED);
                     results.add("Terminated: Reached max steps (" + maxSteps + ")");
                     sseEmitter.send("执行结束：达到最大步骤（" + maxSteps + "）");
                 }
                 // 正常完成
                 sseEmitter.complete();
             } catch (Exception e) {
-                state = AgentState.ERROR;
+                context.setState(AgentState.ERROR);
                 log.error("error executing agent", e);
                 try {
                     sseEmitter.send("执行错误：" + e.getMessage());
@@ -155,22 +162,37 @@ public abstract class BaseAgent {
                 }
             } finally {
                 // 3、清理资源
-                this.cleanup();
+                this.cleanup(context);
             }
-        });
+        };
+        if (executionEngine != null) {
+            executionEngine.submit(tenantId, task).exceptionally(e -> {
+                // 排队已满或引擎已关闭，任务没有运行
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cause instanceof RejectedExecutionException) {
+                    try {
+                        sseEmitter.send("错误：" + cause.getMessage());
+                        sseEmitter.complete();
+                    } catch (IOException ex) {
+                        sseEmitter.completeWithError(ex);
+                    }
+                }
+                return null;
+            });
+        } else {
+            Thread.ofVirtual().name("agent-" + name).start(task);
+        }
 
         // 设置超时回调
         sseEmitter.onTimeout(() -> {
-            this.state = AgentState.ERROR;
-            this.cleanup();
+            context.setState(AgentState.ERROR);
             log.warn("SSE connection timeout");
         });
         // 设置完成回调
         sseEmitter.onCompletion(() -> {
-            if (this.state == AgentState.RUNNING) {
-                this.state = AgentState.FINISHED;
+            if (context.getState() == AgentState.RUNNING) {
+                context.setState(AgentState.FINISHED);
             }
-            this.cleanup();
             log.info("SSE connection completed");
         });
         return sseEmitter;
@@ -179,14 +201,17 @@ public abstract class BaseAgent {
     /**
      * 定义单个步骤
      *
+     * @param context 本次运行的上下文
      * @return
      */
-    public abstract String step();
+    public abstract String step(AgentContext context);
 
     /**
      * 清理资源
+     *
+     * @param context 本次运行的上下文
      */
-    protected void cleanup() {
+    protected void cleanup(AgentContext context) {
         // 子类可以重写此方法来清理资源
     }
 }
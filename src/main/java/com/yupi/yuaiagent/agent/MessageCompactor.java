@@ -0,0 +1,23 @@
+package com.yupi.yuaiagent.agent;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 消息上下文压缩器
+ * <p>
+ * 在每次 think 调用大模型之前执行，用于控制长时间运行的代理不断增长的消息上下文。
+ * 实现类必须保持助手的工具调用消息与对应的工具响应消息成对出现。
+ */
+public interface MessageCompactor {
+
+    /**
+     * 压缩消息上下文
+     *
+     * @param messages       当前的消息上下文
+     * @param nextStepPrompt 每一步都会追加的提示词，可用于去重
+     * @return 压缩后的消息上下文
+     */
+    List<Message> compact(List<Message> messages, String nextStepPrompt);
+}
@@ -0,0 +1,215 @@
+package com.yupi.yuaiagent.agent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 并行执行工具调用的管理者
+ * <p>
+ * 大模型在一轮回复中返回多个工具调用时，Spring AI 默认的 ToolCallingManager 会逐个顺序执行，
+ * 单步耗时等于所有工具耗时之和。这里把互不依赖的工具调用分发到虚拟线程并行执行：
+ * 每个工具有独立的并发上限；标记为串行的工具（如终端命令）在同一个虚拟线程中按原顺序依次执行，
+ * 上一个调用真正返回后才开始下一个。一轮调用共享一个截止时间，到期仍未完成的调用被中断，
+ * 尚未开始的串行调用不再执行。按原始顺序组装 ToolResponseMessage，单步耗时降为最慢的那次调用，且不超过截止时间。
+ */
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    // 默认每个工具的并发上限
+    private static final int DEFAULT_MAX_CONCURRENCY_PER_TOOL = 4;
+
+    // 默认一轮工具调用的超时时间
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
+    // 默认需要串行执行的工具
+    private static final Set<String> DEFAULT_SERIAL_TOOLS = Set.of("executeTerminalCommand");
+
+    // 解析工具定义仍使用默认实现
+    private final ToolCallingManager delegate = ToolCallingManager.builder().build();
+
+    private final ToolExecutionExceptionProcessor exceptionProcessor = DefaultToolExecutionExceptionProcessor.builder().build();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, ToolCallback> toolCallbacks = new HashMap<>();
+
+    private final Map<String, Semaphore> toolPermits = new HashMap<>();
+
+    private final Set<String> serialTools;
+
+    private final Duration timeout;
+
+    public ParallelToolCallingManager(ToolCallback[] availableTools) {
+        this(availableTools, DEFAULT_SERIAL_TOOLS, DEFAULT_MAX_CONCURRENCY_PER_TOOL, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param availableTools        可用的工具
+     * @param serialTools           需要串行执行的工具名称
+     * @param maxConcurrencyPerTool 每个工具的并发上限（多个代理运行共享）
+     * @param timeout               一轮工具调用的超时时间
+     */
+    public ParallelToolCallingManager(ToolCallback[] availableTools, Set<String> serialTools,
+                                      int maxConcurrencyPerTool, Duration timeout) {
+        for (ToolCallback toolCallback : availableTools) {
+            String toolName = toolCallback.getToolDefinition().name();
+            toolCallbacks.put(toolName, toolCallback);
+            toolPermits.put(toolName, new Semaphore(maxConcurrencyPerTool));
+        }
+        this.serialTools = serialTools;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        boolean returnDirect = true;
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolCallback toolCallback = toolCallbacks.get(toolCall.name());
+            if (toolCallback == null) {
+                throw new IllegalStateException("No ToolCallback found for tool name: " + toolCall.name());
+            }
+            returnDirect = returnDirect && toolCallback.getToolMetadata().returnDirect();
+        }
+        // 1、分发：可并行的工具各自提交，串行工具按原顺序放到同一个任务中依次执行
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Future<String>> futures = new ArrayList<>(toolCalls.size());
+        List<Integer> serialIndexes = new ArrayList<>();
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            if (serialTools.contains(toolCall.name())) {
+                serialIndexes.add(i);
+                futures.add(new CompletableFuture<>());
+            } else {
+                futures.add(executor.submit(() -> callTool(toolCall)));
+            }
+        }
+        Future<?> serialChain = null;
+        AtomicBoolean serialCancelled = new AtomicBoolean();
+        if (!serialIndexes.isEmpty()) {
+            serialChain = executor.submit(() -> runSerial(toolCalls, serialIndexes, futures, deadline, serialCancelled));
+        }
+        // 2、按原始顺序收集结果，所有调用共享同一个截止时间
+        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            String result = awaitResult(toolCall, futures.get(i), deadline);
+            toolResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), result));
+        }
+        // 截止时间已到，中断仍在执行的串行调用，后面的串行调用不再开始
+        if (serialChain != null) {
+            serialCancelled.set(true);
+            serialChain.cancel(true);
+        }
+        List<Message> conversationHistory = new ArrayList<>(prompt.getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(new ToolResponseMessage(toolResponses, Map.of()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    /**
+     * 在同一个线程中依次执行串行调用；本轮已取消或超过截止时间后，剩余的调用直接取消
+     * <p>
+     * 不能只依赖中断标记：工具可能捕获 InterruptedException 后清除了中断标记
+     */
+    private void runSerial(List<AssistantMessage.ToolCall> toolCalls, List<Integer> serialIndexes,
+                           List<Future<String>> futures, long deadline, AtomicBoolean cancelled) {
+        for (int index : serialIndexes) {
+            CompletableFuture<String> future = (CompletableFuture<String>) futures.get(index);
+            if (cancelled.get() || System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                future.cancel(false);
+                continue;
+            }
+            try {
+                future.complete(callTool(toolCalls.get(index)));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 在工具的并发配额内执行一次调用
+     */
+    private String callTool(AssistantMessage.ToolCall toolCall) {
+        Semaphore permits = toolPermits.get(toolCall.name());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: tool " + toolCall.name() + " was interrupted";
+        }
+        long start = System.currentTimeMillis();
+        try {
+            return toolCallbacks.get(toolCall.name()).call(toolCall.arguments());
+        } catch (ToolExecutionException e) {
+            return exceptionProcessor.process(e);
+        } finally {
+            permits.release();
+            log.info("工具 {} 执行耗时 {} ms", toolCall.name(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 等待调用结果，超时或失败时把错误信息作为工具结果返回给大模型
+     */
+    private String awaitResult(AssistantMessage.ToolCall toolCall, Future<String> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            // 中断执行中的并行调用；串行调用由串行任务统一中断
+            future.cancel(true);
+            log.warn("工具 {} 执行超时（{}）", toolCall.name(), timeout);
+            return "Error: tool " + toolCall.name() + " timed out after " + timeout.toSeconds() + "s";
+        } catch (ExecutionException e) {
+            log.error("工具 {} 执行失败", toolCall.name(), e.getCause());
+            return "Error: tool " + toolCall.name() + " failed: " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: tool " + toolCall.name() + " was interrupted";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.yupi.yuaiagent.agent;
 
+import com.yupi.yuaiagent.agent.model.AgentContext;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
@@ -16,32 +17,35 @@ public abstract class ReActAgent extends BaseAgent {
     /**
      * 处理当前状态并决定下一步行动
      *
+     * @param context 本次运行的上下文
      * @return 是否需要执行行动，true表示需要执行，false表示不需要执行
      */
-    public abstract boolean think();
+    public abstract boolean think(AgentContext context);
 
     /**
      * 执行决定的行动
      *
+     * @param context 本次运行的上下文
      * @return 行动执行结果
      */
-    public abstract String act();
+    public abstract String act(AgentContext context);
 
     /**
      * 执行单个步骤：思考和行动
      *
+     * @param context 本次运行的上下文
      * @return 步骤执行结果
      */
     @Override
-    public String step() {
+    public String step(AgentContext context) {
         try {
             // 先思考
-            boolean shouldAct = think();
+            boolean shouldAct = think(context);
             if (!shouldAct) {
                 return "思考完成 - 无需行动";
             }
             // 再行动
-            return act();
+            return act(context);
         } catch (Exception e) {
             // 记录异常日志
             e.printStackTrace();
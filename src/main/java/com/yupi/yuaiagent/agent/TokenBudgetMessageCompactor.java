@@ -0,0 +1,167 @@
+package com.yupi.yuaiagent.agent;
+
+import com.yupi.yuaiagent.rag.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基于 Token 预算的消息上下文压缩器
+ * <p>
+ * 依次执行三个阶段：
+ * 1. 去重：每一步都会追加相同的 nextStepPrompt，只保留最后一条；
+ * 2. 摘要过期步骤：只保留最近几次工具响应的原文，更早的工具响应（如网页 HTML、搜索 JSON）替换为开头片段的摘要；
+ * 3. 预算截断：估算的 Token 数仍超出预算时，从最早的工具响应开始逐条截断，直到满足预算。
+ * 工具调用消息和工具响应消息只修改内容、不删除，保证两者成对出现。
+ */
+@Slf4j
+public class TokenBudgetMessageCompactor implements MessageCompactor {
+
+    // 默认的上下文 Token 预算
+    private static final int DEFAULT_MAX_TOKENS = 24000;
+
+    // 默认保留原文的最近工具响应数
+    private static final int DEFAULT_KEEP_RECENT_TOOL_RESPONSES = 2;
+
+    // 默认过期工具响应保留的摘要字符数
+    private static final int DEFAULT_EXCERPT_CHARS = 500;
+
+    // 超出预算时每条工具响应最少保留的字符数
+    private static final int MIN_TRUNCATED_CHARS = 200;
+
+    // 已压缩内容的格式
+    private static final Pattern COMPACTED_PATTERN = Pattern.compile("^\\[已压缩，原始内容 (\\d+) 字符] (.*)\\.\\.\\.$", Pattern.DOTALL);
+
+    private final int maxTokens;
+
+    private final int keepRecentToolResponses;
+
+    private final int excerptChars;
+
+    public TokenBudgetMessageCompactor() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_KEEP_RECENT_TOOL_RESPONSES, DEFAULT_EXCERPT_CHARS);
+    }
+
+    /**
+     * @param maxTokens               上下文 Token 预算
+     * @param keepRecentToolResponses 保留原文的最近工具响应数
+     * @param excerptChars            过期工具响应保留的摘要字符数
+     */
+    public TokenBudgetMessageCompactor(int maxTokens, int keepRecentToolResponses, int excerptChars) {
+        this.maxTokens = maxTokens;
+        this.keepRecentToolResponses = keepRecentToolResponses;
+        this.excerptChars = excerptChars;
+    }
+
+    @Override
+    public List<Message> compact(List<Message> messages, String nextStepPrompt) {
+        int tokensBefore = estimateTokens(messages);
+        // 1、去重 nextStepPrompt
+        List<Message> result = deduplicateNextStepPrompt(messages, nextStepPrompt);
+        // 2、摘要过期的工具响应
+        int toolResponseCount = (int) result.stream().filter(ToolResponseMessage.class::isInstance).count();
+        int staleCount = toolResponseCount - keepRecentToolResponses;
+        for (int i = 0; i < result.size() && staleCount > 0; i++) {
+            if (result.get(i) instanceof ToolResponseMessage toolResponseMessage) {
+                result.set(i, truncate(toolResponseMessage, excerptChars));
+                staleCount--;
+            }
+        }
+        // 3、仍超出预算时，从最早的工具响应开始截断
+        int tokens = estimateTokens(result);
+        for (int i = 0; i < result.size() && tokens > maxTokens; i++) {
+            if (result.get(i) instanceof ToolResponseMessage toolResponseMessage) {
+                result.set(i, truncate(toolResponseMessage, MIN_TRUNCATED_CHARS));
+                tokens = estimateTokens(result);
+            }
+        }
+        if (tokens < tokensBefore) {
+            log.info("上下文压缩：{} 条消息，约 {} -> {} tokens", result.size(), tokensBefore, tokens);
+        }
+        return result;
+    }
+
+    /**
+     * 估算消息列表的 Token 数
+     */
+    public static int estimateTokens(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            if (message instanceof ToolResponseMessage toolResponseMessage) {
+                for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                    tokens += estimateTokens(response.responseData());
+                }
+            } else {
+                tokens += estimateTokens(message.getText());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算文本的 Token 数
+     *
+     * @see TokenEstimator#estimate(String)
+     */
+    public static int estimateTokens(String text) {
+        return TokenEstimator.estimate(text);
+    }
+
+    private List<Message> deduplicateNextStepPrompt(List<Message> messages, String nextStepPrompt) {
+        int lastIndex = -1;
+        for (int i = 0; i < messages.size(); i++) {
+            if (isNextStepPrompt(messages.get(i), nextStepPrompt)) {
+                lastIndex = i;
+            }
+        }
+        List<Message> result = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            if (i != lastIndex && isNextStepPrompt(messages.get(i), nextStepPrompt)) {
+                continue;
+            }
+            result.add(messages.get(i));
+        }
+        return result;
+    }
+
+    private static boolean isNextStepPrompt(Message message, String nextStepPrompt) {
+        return nextStepPrompt != null
+                && message instanceof UserMessage
+                && Objects.equals(message.getText(), nextStepPrompt);
+    }
+
+    /**
+     * 把工具响应中超过 maxChars 的内容替换为开头片段的摘要
+     */
+    private static ToolResponseMessage truncate(ToolResponseMessage toolResponseMessage, int maxChars) {
+        boolean changed = false;
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+            String data = response.responseData();
+            int originalLength = data == null ? 0 : data.length();
+            // 已经压缩过的内容，取出原文长度和摘要部分，避免重复叠加前缀
+            Matcher matcher = data == null ? null : COMPACTED_PATTERN.matcher(data);
+            if (matcher != null && matcher.matches()) {
+                originalLength = Integer.parseInt(matcher.group(1));
+                data = matcher.group(2);
+            }
+            if (data != null && data.length() > maxChars) {
+                String excerpt = data.replaceAll("\\s+", " ");
+                excerpt = excerpt.substring(0, Math.min(maxChars, excerpt.length()));
+                data = "[已压缩，原始内容 " + originalLength + " 字符] " + excerpt + "...";
+                changed = true;
+            } else {
+                data = response.responseData();
+            }
+            responses.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(), data));
+        }
+        return changed ? new ToolResponseMessage(responses, toolResponseMessage.getMetadata()) : toolResponseMessage;
+    }
+}
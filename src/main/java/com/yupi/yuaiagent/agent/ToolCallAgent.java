@@ -3,6 +3,7 @@ package com.yupi.yuaiagent.agent;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.yupi.yuaiagent.agent.model.AgentContext;
 import com.yupi.yuaiagent.agent.model.AgentState;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -11,6 +12,7 @@ import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
@@ -23,6 +25,8 @@ import java.util.stream.Collectors;
 
 /**
  * 处理工具调用的基础代理类，具体实现了 think 和 act 方法，可以用作创建实例的父类
+ * <p>
+ * 工具列表、工具调用管理者和对话选项在多次运行间共享，工具调用响应等运行状态保存在 {@link AgentContext} 中
  */
 @EqualsAndHashCode(callSuper = true)
 @Data
@@ -32,19 +36,24 @@ public class ToolCallAgent extends ReActAgent {
     // 可用的工具
     private final ToolCallback[] availableTools;
 
-    // 保存工具调用信息的响应结果（要调用那些工具）
-    private ChatResponse toolCallChatResponse;
-
     // 工具调用管理者
     private final ToolCallingManager toolCallingManager;
 
     // 禁用 Spring AI 内置的工具调用机制，自己维护选项和消息上下文
     private final ChatOptions chatOptions;
 
+    // 消息上下文压缩器，每次 think 调用大模型之前执行
+    private MessageCompactor messageCompactor = new TokenBudgetMessageCompactor();
+
     public ToolCallAgent(ToolCallback[] availableTools) {
+        this(availableTools, new ParallelToolCallingManager(availableTools));
+    }
+
+    public ToolCallAgent(ToolCallback[] availableTools, ToolCallingManager toolCallingManager) {
         super();
         this.availableTools = availableTools;
-        this.toolCallingManager = ToolCallingManager.builder().build();
+        // 同一轮的多个工具调用并行执行
+        this.toolCallingManager = toolCallingManager;
         // 禁用 Spring AI 内置的工具调用机制，自己维护选项和消息上下文
         this.chatOptions = DashScopeChatOptions.builder()
                 .withIncrementalOutput(false)
@@ -54,17 +63,23 @@ public class ToolCallAgent extends ReActAgent {
     /**
      * 处理当前状态并决定下一步行动
      *
+     * @param context 本次运行的上下文
      * @return 是否需要执行行动
      */
     @Override
-    public boolean think() {
+    public boolean think(AgentContext context) {
         // 1、校验提示词，拼接用户提示词
         if (StrUtil.isNotBlank(getNextStepPrompt())) {
             UserMessage userMessage = new UserMessage(getNextStepPrompt());
-            getMessageList().add(userMessage);
+            context.getMessageList().add(userMessage);
+        }
+        // 2、压缩消息上下文，避免过期的工具结果不断累积
+        if (messageCompactor != null) {
+            context.setMessageList(messageCompactor.compact(context.getMessageList(), getNextStepPrompt()));
         }
-        // 2、调用 AI 大模型，获取工具调用结果
-        List<Message> messageList = getMessageList();
+        // 3、调用 AI 大模型，获取工具调用结果
+        List<Message> messageList = context.getMessageList();
+        int estimatedTokens = TokenBudgetMessageCompactor.estimateTokens(messageList);
         Prompt prompt = new Prompt(messageList, this.chatOptions);
         try {
             ChatResponse chatResponse = getChatClient().prompt(prompt)
@@ -73,8 +88,12 @@ public class ToolCallAgent extends ReActAgent {
                     .call()
                     .chatResponse();
             // 记录响应，用于等下 Act
-            this.toolCallChatResponse = chatResponse;
-            // 3、解析工具调用结果，获取要调用的工具
+            context.setToolCallChatResponse(chatResponse);
+            Usage usage = chatResponse.getMetadata().getUsage();
+            log.info("{} 第 {} 步上下文：{} 条消息，估算 {} tokens，实际输入 {} tokens",
+                    getName(), context.getCurrentStep(), messageList.size(), estimatedTokens,
+                    usage == null ? null : usage.getPromptTokens());
+            // 4、解析工具调用结果，获取要调用的工具
             // 助手消息
             AssistantMessage assistantMessage = chatResponse.getResult().getOutput();
             // 获取要调用的工具列表
@@ -90,7 +109,7 @@ public class ToolCallAgent extends ReActAgent {
             // 如果不需要调用工具，返回 false
             if (toolCallList.isEmpty()) {
                 // 只有不调用工具时，才需要手动记录助手消息
-                getMessageList().add(assistantMessage);
+                context.getMessageList().add(assistantMessage);
                 return false;
             } else {
                 // 需要调用工具时，无需记录助手消息，因为调用工具时会自动记录
@@ -98,7 +117,7 @@ public class ToolCallAgent extends ReActAgent {
             }
         } catch (Exception e) {
             log.error(getName() + "的思考过程遇到了问题：" + e.getMessage());
-            getMessageList().add(new AssistantMessage("处理时遇到了错误：" + e.getMessage()));
+            context.getMessageList().add(new AssistantMessage("处理时遇到了错误：" + e.getMessage()));
             return false;
         }
     }
@@ -106,25 +125,27 @@ public class ToolCallAgent extends ReActAgent {
     /**
      * 执行工具调用并处理结果
      *
+     * @param context 本次运行的上下文
      * @return 执行结果
      */
     @Override
-    public String act() {
+    public String act(AgentContext context) {
+        ChatResponse toolCallChatResponse = context.getToolCallChatResponse();
         if (!toolCallChatResponse.hasToolCalls()) {
             return "没有工具需要调用";
         }
         // 调用工具
-        Prompt prompt = new Prompt(getMessageList(), this.chatOptions);
+        Prompt prompt = new Prompt(context.getMessageList(), this.chatOptions);
         ToolExecutionResult toolExecutionResult = toolCallingManager.executeToolCalls(prompt, toolCallChatResponse);
         // 记录消息上下文，conversationHistory 已经包含了助手消息和工具调用返回的结果
-        setMessageList(toolExecutionResult.conversationHistory());
+        context.setMessageList(toolExecutionResult.conversationHistory());
         ToolResponseMessage toolResponseMessage = (ToolResponseMessage) CollUtil.getLast(toolExecutionResult.conversationHistory());
         // 判断是否调用了终止工具
         boolean terminateToolCalled = toolResponseMessage.getResponses().stream()
                 .anyMatch(response -> response.name().equals("doTerminate"));
         if (terminateToolCalled) {
             // 任务结束，更改状态
-            setState(AgentState.FINISHED);
+            context.setState(AgentState.FINISHED);
         }
         String results = toolResponseMessage.getResponses().stream()
                 .map(response -> "工具 " + response.name() + " 返回的结果：" + response.responseData())
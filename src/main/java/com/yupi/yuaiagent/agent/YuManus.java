@@ -4,16 +4,23 @@ import com.yupi.yuaiagent.advisor.MyLoggerAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Set;
+
 /**
  * 鱼皮的 AI 超级智能体（拥有自主规划能力，可以直接使用）
  */
 @Component
 public class YuManus extends ToolCallAgent {
 
-    public YuManus(ToolCallback[] allTools, ChatModel dashscopeChatModel) {
-        super(allTools);
+    public YuManus(ToolCallback[] allTools, ChatModel dashscopeChatModel, AgentExecutionEngine agentExecutionEngine,
+                   @Value("${agent.tool-call.serial-tools:executeTerminalCommand}") Set<String> serialTools,
+                   @Value("${agent.tool-call.max-concurrency-per-tool:4}") int maxConcurrencyPerTool,
+                   @Value("${agent.tool-call.timeout:60s}") Duration toolCallTimeout) {
+        super(allTools, new ParallelToolCallingManager(allTools, serialTools, maxConcurrencyPerTool, toolCallTimeout));
         this.setName("yuManus");
         String SYSTEM_PROMPT = """
                 You are YuManus, an all-capable AI assistant, aimed at solving any task presented by the user.
@@ -33,5 +40,7 @@ public class YuManus extends ToolCallAgent {
                 .defaultAdvisors(new MyLoggerAdvisor())
                 .build();
         this.setChatClient(chatClient);
+        // 流式运行使用虚拟线程执行引擎
+        this.setExecutionEngine(agentExecutionEngine);
     }
 }
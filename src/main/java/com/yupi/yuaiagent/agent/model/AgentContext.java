@@ -0,0 +1,29 @@
+package com.yupi.yuaiagent.agent.model;
+
+import lombok.Data;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 代理单次运行的上下文
+ * <p>
+ * 保存一次运行过程中会变化的全部状态，每次运行创建一个新实例，不同运行之间互不影响。
+ */
+@Data
+public class AgentContext {
+
+    // 代理状态（SSE 超时回调会在其他线程修改）
+    private volatile AgentState state = AgentState.IDLE;
+
+    // 当前执行到的步骤
+    private int currentStep = 0;
+
+    // Memory 记忆（需要自主维护会话上下文）
+    private List<Message> messageList = new ArrayList<>();
+
+    // 保存工具调用信息的响应结果（要调用那些工具）
+    private ChatResponse toolCallChatResponse;
+}
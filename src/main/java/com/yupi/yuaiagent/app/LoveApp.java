@@ -2,8 +2,7 @@ package com.yupi.yuaiagent.app;
 
 
 import com.yupi.yuaiagent.advisor.MyLoggerAdvisor;
-import com.yupi.yuaiagent.chatmemory.FileBasedChatMemory;
-import com.yupi.yuaiagent.rag.LoveAppRagCustomAdvisorFactory;
+import com.yupi.yuaiagent.advisor.SemanticCacheAdvisor;
 import com.yupi.yuaiagent.rag.PgVectorVectorStoreConfig;
 import com.yupi.yuaiagent.rag.QueryRewriter;
 import jakarta.annotation.Resource;
@@ -19,8 +18,14 @@ import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
@@ -37,6 +42,9 @@ public class LoveApp {
     // ChatClient实例，用于与用户进行对话
     private final ChatClient chatClient;
 
+    // RAG 对话额外使用的检索增强顾问，未开启混合检索时为空
+    private final List<Advisor> ragAdvisors;
+
     // 系统提示词，定义了AI助手的角色和行为准则
     private static final String SYSTEM_PROMPT = "扮演深耕恋爱心理领域的专家。开场向用户表明身份，告知用户可倾诉恋爱难题。" +
             "围绕单身、恋爱、已婚三种状态提问：单身状态询问社交圈拓展及追求心仪对象的困扰；" +
@@ -50,23 +58,26 @@ public class LoveApp {
     /**
      * 构造函数，初始化ChatClient
      * @param dashscopeChatModel 阿里云通义千问的ChatModel实例
+     * @param loveAppChatMemory 基于文件持久化、带写回缓存的对话记忆（见 ChatMemoryConfig）
+     * @param loveAppSemanticCacheAdvisor 语义缓存顾问，关闭语义缓存时不存在（见 SemanticCacheAdvisorConfig）
+     * @param loveAppHybridRagAdvisor 混合检索顾问，开启 rag.hybrid.enabled 时存在（见 LoveAppVectorStoreConfig）
      */
-    public LoveApp(ChatModel dashscopeChatModel) {
-
-        // 初始化基于文件的对话记忆存储路径
-       String fileDir = System.getProperty("user.dir") + "/tmp/chat-memory";
-       // 创建基于文件的对话记忆实例
-       ChatMemory chatMemory = new FileBasedChatMemory(fileDir);
+    public LoveApp(ChatModel dashscopeChatModel, ChatMemory loveAppChatMemory,
+                   ObjectProvider<SemanticCacheAdvisor> loveAppSemanticCacheAdvisor,
+                   @Qualifier("loveAppHybridRagAdvisor") ObjectProvider<Advisor> loveAppHybridRagAdvisor) {
+        ragAdvisors = loveAppHybridRagAdvisor.stream().toList();
+        List<Advisor> advisors = new ArrayList<>();
+        advisors.add(new MessageChatMemoryAdvisor(loveAppChatMemory));  // 添加消息记忆顾问
+        // 语义缓存顾问，相似问题直接返回缓存的回答
+        loveAppSemanticCacheAdvisor.ifAvailable(advisors::add);
         // 构建ChatClient，设置系统提示和记忆顾问
         chatClient = ChatClient.builder(dashscopeChatModel)
                 .defaultSystem(SYSTEM_PROMPT)  // 设置默认系统提示
-                .defaultAdvisors(              // 设置默认顾问列表
-                        new MessageChatMemoryAdvisor(chatMemory)  // 添加消息记忆顾问
-                        // 自定义日志 Advisor，可按需开启
-                        // new MyLoggerAdvisor()
-//                        // 自定义推理增强 Advisor，可按需开启
-//                       ,new ReReadingAdvisor()
-                )
+                .defaultAdvisors(advisors)     // 设置默认顾问列表
+                // 自定义日志 Advisor，可按需开启
+                // new MyLoggerAdvisor()
+                // 自定义推理增强 Advisor，可按需开启
+                // new ReReadingAdvisor()
                 .build();  // 构建ChatClient实例
     }
 
@@ -93,6 +104,22 @@ public class LoveApp {
         return content;  // 返回AI回复内容
     }
 
+    /**
+     * 处理用户聊天消息的方法（流式输出）
+     * @param message 用户输入的消息
+     * @param chatId 聊天会话ID，用于区分不同的对话
+     * @return AI助手回复内容的流，模型每生成一段内容就输出一段
+     */
+    public Flux<String> doChatByStream(String message, String chatId) {
+        return chatClient
+                .prompt()
+                .user(message)
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
+                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                .stream()  // 执行流式对话调用
+                .content();
+    }
+
     /**
      * 处理用户聊天消息并生成恋爱报告的方法
      * @param message 用户输入的消息
@@ -150,6 +177,8 @@ public class LoveApp {
                         .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
                 // 开启日志，便于观察效果
                 .advisors(new MyLoggerAdvisor())
+                // 应用混合检索的 RAG 检索增强服务（关键词 + 向量，倒数排名融合），rag.hybrid.enabled 开启时生效
+                .advisors(ragAdvisors)
                 // // 应用 RAG 知识库问答
                //  .advisors(new QuestionAnswerAdvisor(loveAppVectorStore))
                //  // 应用 RAG 检索增强服务（基于云知识库服务）
@@ -157,11 +186,7 @@ public class LoveApp {
                //  // 应用 RAG 检索增强服务（基于 PgVector 向量存储）
                // .advisors(new QuestionAnswerAdvisor(pgVectorVectorStore))
                //  // 应用自定义的 RAG 检索增强服务（文档查询器 + 上下文增强器）
-               // .advisors(
-               //         LoveAppRagCustomAdvisorFactory.createLoveAppRagCustomAdvisor(
-               //                 loveAppVectorStore, "单身"
-               //         )
-               // )
+               // .advisors(loveAppRagAdvisorCache.forStatus("单身"))  // 注入 LoveAppRagAdvisorCache 后使用，每种状态只构建一次
                 .call()
                 .chatResponse();
         String content = chatResponse.getResult().getOutput().getText();
@@ -169,6 +194,30 @@ public class LoveApp {
         return content;
     }
 
+    /**
+     * 和 RAG 知识库进行对话（流式输出）
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    public Flux<String> doChatWithRagByStream(String message, String chatId) {
+        // 查询重写是阻塞调用，放到弹性线程池中执行，避免占用调用方线程
+        return Mono.fromCallable(() -> queryRewriter.doQueryRewrite(message))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(rewrittenMessage -> chatClient
+                        .prompt()
+                        // 使用改写后的查询
+                        .user(rewrittenMessage)
+                        .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
+                                .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                        // 开启日志，便于观察效果
+                        .advisors(new MyLoggerAdvisor())
+                        .advisors(ragAdvisors)
+                        .stream()
+                        .content());
+    }
+
     @Resource
     private ToolCallback[] allTools;
 
@@ -188,6 +237,18 @@ public class LoveApp {
         return content;
     }
 
+    public Flux<String> doChatWithToolsByStream(String message, String chatId) {
+        return chatClient
+                .prompt()
+                .user(message)
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
+                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                .advisors(new MyLoggerAdvisor())
+                .tools(allTools)
+                .stream()
+                .content();
+    }
+
     @Resource
     private ToolCallbackProvider toolCallbackProvider;
 
@@ -207,5 +268,15 @@ public class LoveApp {
         return content;
     }
 
-
-}
\ No newline at end of file
+    public Flux<String> doChatWithMcpByStream(String message, String chatId) {
+        return chatClient
+                .prompt()
+                .user(message)
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
+                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                .advisors(new MyLoggerAdvisor())
+                .tools(toolCallbackProvider)
+                .stream()
+                .content();
+    }
+}
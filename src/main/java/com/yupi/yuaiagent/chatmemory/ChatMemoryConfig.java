@@ -0,0 +1,49 @@
+package com.yupi.yuaiagent.chatmemory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对话记忆配置
+ * 基于文件的持久化存储 + 写回缓存
+ */
+@Configuration
+public class ChatMemoryConfig {
+
+    // 对话文件保存目录
+    @Value("${chat-memory.dir:${user.dir}/tmp/chat-memory}")
+    private String dir;
+
+    // 每个会话最多保留的消息数
+    @Value("${chat-memory.max-messages:1000}")
+    private int maxMessages;
+
+    // 最多缓存的会话数
+    @Value("${chat-memory.cache.max-conversations:1000}")
+    private int maxConversations;
+
+    // 每个缓存会话保留的最近消息数
+    @Value("${chat-memory.cache.window:20}")
+    private int window;
+
+    // 会话空闲淘汰时间
+    @Value("${chat-memory.cache.idle-ttl:30m}")
+    private Duration idleTtl;
+
+    // 批量落盘间隔
+    @Value("${chat-memory.cache.flush-interval:1s}")
+    private Duration flushInterval;
+
+    // 每批落盘后是否强制刷盘（fsync）
+    @Value("${chat-memory.cache.fsync-on-flush:false}")
+    private boolean fsyncOnFlush;
+
+    @Bean
+    public WriteBehindChatMemory loveAppChatMemory() {
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(dir, maxMessages, fsyncOnFlush);
+        return new WriteBehindChatMemory(fileBasedChatMemory, maxConversations, window, idleTtl, flushInterval);
+    }
+}
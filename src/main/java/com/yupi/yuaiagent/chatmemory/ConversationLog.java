@@ -0,0 +1,250 @@
+package com.yupi.yuaiagent.chatmemory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个会话的追加写日志（Append-only Log）
+ * <p>
+ * 日志文件 {conversationId}.log 由若干条「4 字节长度 + 消息字节」的记录顺序拼接而成；
+ * 索引文件 {conversationId}.idx 按顺序记录每条记录在日志中的起始偏移量（每条 8 字节）。
+ * 追加消息只写新增的记录，读取最后 N 条消息时只需读取索引尾部的 N 个偏移量，
+ * 再从日志对应位置读到文件末尾即可，不需要加载整个会话。
+ */
+class ConversationLog {
+
+    // 记录长度前缀占用的字节数
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    // 索引中每个偏移量占用的字节数
+    private static final int OFFSET_BYTES = Long.BYTES;
+
+    private final File logFile;
+
+    private final File indexFile;
+
+    ConversationLog(File baseDir, String conversationId) {
+        this.logFile = new File(baseDir, conversationId + ".log");
+        this.indexFile = new File(baseDir, conversationId + ".idx");
+    }
+
+    boolean exists() {
+        return logFile.exists();
+    }
+
+    /**
+     * 获取日志中的记录条数
+     */
+    int size() throws IOException {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        recoverIfNecessary();
+        return (int) (indexFile.length() / OFFSET_BYTES);
+    }
+
+    /**
+     * 追加记录，只写入新增部分，写入成本与新增消息数量成正比
+     */
+    void append(List<byte[]> records) throws IOException {
+        append(records, false);
+    }
+
+    /**
+     * 追加记录
+     *
+     * @param force 是否在写入后强制刷盘（fsync）
+     */
+    void append(List<byte[]> records, boolean force) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        recoverIfNecessary();
+        try (FileChannel logChannel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileChannel indexChannel = FileChannel.open(indexFile.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long offset = logChannel.size();
+            int totalBytes = 0;
+            for (byte[] record : records) {
+                totalBytes += LENGTH_BYTES + record.length;
+            }
+            ByteBuffer logBuffer = ByteBuffer.allocate(totalBytes);
+            ByteBuffer indexBuffer = ByteBuffer.allocate(records.size() * OFFSET_BYTES);
+            for (byte[] record : records) {
+                indexBuffer.putLong(offset);
+                logBuffer.putInt(record.length).put(record);
+                offset += LENGTH_BYTES + record.length;
+            }
+            // 先写日志再写索引，崩溃时最多出现「日志比索引多」的情况，可以在下次访问时修复
+            writeFully(logChannel, logBuffer.flip());
+            writeFully(indexChannel, indexBuffer.flip());
+            if (force) {
+                logChannel.force(false);
+                indexChannel.force(false);
+            }
+        }
+    }
+
+    /**
+     * 读取最后 n 条记录
+     */
+    List<byte[]> readLast(int n) throws IOException {
+        if (n <= 0 || !logFile.exists()) {
+            return new ArrayList<>();
+        }
+        recoverIfNecessary();
+        int count = (int) (indexFile.length() / OFFSET_BYTES);
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+        int from = Math.max(count - n, 0);
+        long startOffset = readOffset(from);
+        return readRecords(startOffset, count - from);
+    }
+
+    /**
+     * 读取全部记录
+     */
+    List<byte[]> readAll() throws IOException {
+        return readLast(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 用给定记录重写日志（压缩），先写临时文件再原子替换，避免中途失败导致数据丢失
+     */
+    void rewrite(List<byte[]> records) throws IOException {
+        if (records.isEmpty()) {
+            delete();
+            return;
+        }
+        File tmpLog = new File(logFile.getPath() + ".tmp");
+        File tmpIndex = new File(indexFile.getPath() + ".tmp");
+        Files.deleteIfExists(tmpLog.toPath());
+        Files.deleteIfExists(tmpIndex.toPath());
+        ConversationLog tmp = new ConversationLog(tmpLog, tmpIndex);
+        tmp.append(records);
+        // 先删除旧索引，再替换日志，最后移入新索引：新索引不会先于新日志生效。
+        // 任意两步之间崩溃时索引缺失，下次打开时 recoverIfNecessary 会以日志（旧或新，ATOMIC_MOVE 保证完整）为准重建索引
+        Files.deleteIfExists(indexFile.toPath());
+        Files.move(tmpLog.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (tmpIndex.exists()) {
+            Files.move(tmpIndex.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(logFile.toPath());
+        Files.deleteIfExists(indexFile.toPath());
+    }
+
+    private ConversationLog(File logFile, File indexFile) {
+        this.logFile = logFile;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * 校验索引与日志是否一致：
+     * 日志末尾存在未建立索引的完整记录时补齐索引，存在写了一半的记录时截断日志
+     */
+    private void recoverIfNecessary() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        long logSize = logFile.length();
+        long indexSize = indexFile.exists() ? indexFile.length() : 0;
+        long indexedCount = indexSize / OFFSET_BYTES;
+        long expectedEnd = 0;
+        if (indexedCount > 0) {
+            long lastOffset = readOffset((int) (indexedCount - 1));
+            expectedEnd = lastOffset < logSize ? lastOffset + LENGTH_BYTES + readLength(lastOffset) : Long.MAX_VALUE;
+        }
+        if (expectedEnd == logSize && indexSize % OFFSET_BYTES == 0) {
+            return;
+        }
+        // 以日志为准重新扫描，重建索引
+        List<Long> offsets = new ArrayList<>();
+        long validEnd = 0;
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_BYTES);
+            long position = 0;
+            while (position + LENGTH_BYTES <= logSize) {
+                lengthBuffer.clear();
+                readFully(channel, lengthBuffer, position);
+                int length = lengthBuffer.flip().getInt();
+                if (length < 0 || position + LENGTH_BYTES + length > logSize) {
+                    break;
+                }
+                offsets.add(position);
+                position += LENGTH_BYTES + length;
+                validEnd = position;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(validEnd);
+        }
+        ByteBuffer indexBuffer = ByteBuffer.allocate(offsets.size() * OFFSET_BYTES);
+        offsets.forEach(indexBuffer::putLong);
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, indexBuffer.flip());
+        }
+    }
+
+    private long readOffset(int recordIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(OFFSET_BYTES);
+            readFully(channel, buffer, (long) recordIndex * OFFSET_BYTES);
+            return buffer.flip().getLong();
+        }
+    }
+
+    private int readLength(long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            if (offset + LENGTH_BYTES > channel.size()) {
+                return Integer.MAX_VALUE;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(LENGTH_BYTES);
+            readFully(channel, buffer, offset);
+            return buffer.flip().getInt();
+        }
+    }
+
+    private List<byte[]> readRecords(long startOffset, int count) throws IOException {
+        List<byte[]> records = new ArrayList<>(count);
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - startOffset));
+            readFully(channel, buffer, startOffset);
+            buffer.flip();
+            while (records.size() < count && buffer.remaining() >= LENGTH_BYTES) {
+                byte[] record = new byte[buffer.getInt()];
+                buffer.get(record);
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,91 +1,172 @@
 package com.yupi.yuaiagent.chatmemory;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import org.objenesis.strategy.StdInstantiatorStrategy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 基于文件持久化的对话记忆实现类
- * 使用Kryo库进行序列化和反序列化操作
+ * 使用Kryo库进行序列化和反序列化操作（见 {@link KryoMessageSerializer}）
+ * <p>
+ * 每个会话对应一个追加写日志（见 {@link ConversationLog}），每条消息单独序列化为一条记录：
+ * add 只追加新消息，get 只读取日志尾部的最后 N 条记录。
+ * 当记录数超过 2 倍保留上限时触发压缩，只保留最近的 maxMessages 条消息。
+ * <p>
+ * 并发访问按会话 ID 分段加锁：同一会话的读写互斥，不同会话大概率落在不同的锁上，可以并行持久化。
  */
+@Slf4j
 public class FileBasedChatMemory implements ChatMemory {
 
-    private final String BASE_DIR;  // 存储对话文件的根目录
-    private static final Kryo kryo = new Kryo();  // Kryo序列化工具实例
+    // 默认每个会话最多保留的消息数
+    private static final int DEFAULT_MAX_MESSAGES = 1000;
 
-    // 静态初始化块，配置Kryo实例
-    static {
-        kryo.setRegistrationRequired(false);  // 不要求注册类以提高灵活性
-        // 设置实例化策略，允许无参构造函数的对象创建
-        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
-    }
+    // 分段锁数量（2 的幂）
+    private static final int LOCK_STRIPES = 64;
+
+    private final String BASE_DIR;  // 存储对话文件的根目录
+    private final int maxMessages;  // 每个会话压缩后保留的消息数
+    private final boolean fsync;  // 每次追加后是否强制刷盘
+    private final KryoMessageSerializer serializer = new KryoMessageSerializer();  // 线程安全的序列化工具
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];  // 按会话分段的锁
 
     // 构造对象时，指定文件保存目录
     public FileBasedChatMemory(String dir) {
+        this(dir, DEFAULT_MAX_MESSAGES);
+    }
+
+    // 构造对象时，指定文件保存目录和每个会话保留的消息数
+    public FileBasedChatMemory(String dir, int maxMessages) {
+        this(dir, maxMessages, false);
+    }
+
+    // 构造对象时，指定文件保存目录、每个会话保留的消息数以及是否在追加后强制刷盘
+    public FileBasedChatMemory(String dir, int maxMessages, boolean fsync) {
         this.BASE_DIR = dir;
+        this.maxMessages = maxMessages;
+        this.fsync = fsync;
         File baseDir = new File(dir);
         if (!baseDir.exists()) {
             baseDir.mkdirs();
         }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
     }
 
     @Override
     public void add(String conversationId, List<Message> messages) {
-        List<Message> conversationMessages = getOrCreateConversation(conversationId);
-        conversationMessages.addAll(messages);
-        saveConversation(conversationId, conversationMessages);
+        // 序列化不涉及共享状态，放在锁外执行
+        List<byte[]> records = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            records.add(serializer.serialize(message));
+        }
+        ReentrantLock lock = getLock(conversationId);
+        lock.lock();
+        try {
+            ConversationLog conversationLog = getConversationLog(conversationId);
+            conversationLog.append(records, fsync);
+            compactIfNecessary(conversationLog);
+        } catch (IOException e) {
+            log.error("Failed to append messages to conversation {}", conversationId, e);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public List<Message> get(String conversationId, int lastN) {
-        List<Message> allMessages = getOrCreateConversation(conversationId);
-        return allMessages.stream()
-                .skip(Math.max(allMessages.size() - lastN, 0))
-                .collect(Collectors.toList());
+        List<byte[]> records = new ArrayList<>();
+        ReentrantLock lock = getLock(conversationId);
+        lock.lock();
+        try {
+            records = getConversationLog(conversationId).readLast(lastN);
+        } catch (IOException e) {
+            log.error("Failed to read conversation {}", conversationId, e);
+        } finally {
+            lock.unlock();
+        }
+        List<Message> messages = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+            messages.add(serializer.deserialize(record));
         }
+        return messages;
+    }
 
     @Override
     public void clear(String conversationId) {
-        File file = getConversationFile(conversationId);
-        if (file.exists()) {
-            file.delete();
+        ReentrantLock lock = getLock(conversationId);
+        lock.lock();
+        try {
+            getConversationLog(conversationId).delete();
+            File legacyFile = getLegacyConversationFile(conversationId);
+            if (legacyFile.exists()) {
+                legacyFile.delete();
+            }
+        } catch (IOException e) {
+            log.error("Failed to clear conversation {}", conversationId, e);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private List<Message> getOrCreateConversation(String conversationId) {
-        File file = getConversationFile(conversationId);
-        List<Message> messages = new ArrayList<>();
-        if (file.exists()) {
-            try (Input input = new Input(new FileInputStream(file))) {
-                messages = kryo.readObject(input, ArrayList.class);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    /**
+     * 记录数超过 2 倍保留上限时，重写日志只保留最近的 maxMessages 条记录
+     */
+    private void compactIfNecessary(ConversationLog conversationLog) throws IOException {
+        if (conversationLog.size() > maxMessages * 2) {
+            conversationLog.rewrite(conversationLog.readLast(maxMessages));
         }
-        return messages;
     }
 
-    private void saveConversation(String conversationId, List<Message> messages) {
-        File file = getConversationFile(conversationId);
-        try (Output output = new Output(new FileOutputStream(file))) {
-            kryo.writeObject(output, messages);
+    private ReentrantLock getLock(String conversationId) {
+        // 扰动哈希值，避免相近的会话 ID 集中到少数几个锁上
+        int hash = conversationId.hashCode();
+        hash ^= (hash >>> 16);
+        return locks[hash & (LOCK_STRIPES - 1)];
+    }
+
+    // 调用方需要持有对应会话的锁
+    private ConversationLog getConversationLog(String conversationId) {
+        ConversationLog conversationLog = new ConversationLog(new File(BASE_DIR), conversationId);
+        migrateLegacyConversation(conversationId, conversationLog);
+        return conversationLog;
+    }
+
+    /**
+     * 兼容旧格式：把整体序列化的 {conversationId}.kryo 文件迁移为追加写日志
+     */
+    private void migrateLegacyConversation(String conversationId, ConversationLog conversationLog) {
+        File legacyFile = getLegacyConversationFile(conversationId);
+        if (!legacyFile.exists() || conversationLog.exists()) {
+            return;
+        }
+        List<Message> messages;
+        try (FileInputStream input = new FileInputStream(legacyFile)) {
+            messages = serializer.deserializeLegacyList(input);
+        } catch (IOException e) {
+            log.error("Failed to read legacy conversation file {}", legacyFile, e);
+            return;
+        }
+        try {
+            List<byte[]> records = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                records.add(serializer.serialize(message));
+            }
+            conversationLog.append(records);
+            legacyFile.delete();
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("Failed to migrate legacy conversation file {}", legacyFile, e);
         }
     }
 
-    private File getConversationFile(String conversationId) {
+    private File getLegacyConversationFile(String conversationId) {
         return new File(BASE_DIR, conversationId + ".kryo");
     }
 }
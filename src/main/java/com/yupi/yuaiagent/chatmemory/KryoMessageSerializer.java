@@ -0,0 +1,94 @@
+package com.yupi.yuaiagent.chatmemory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 基于 Kryo 对象池的消息序列化器
+ * <p>
+ * Kryo 实例不是线程安全的，这里通过对象池为每次序列化借出独立的实例，用完归还，
+ * 多个会话可以并行读写。常用的消息类型都使用固定 ID 预先注册，序列化时只写入变长整数 ID，
+ * 不再逐条写入完整类名；消息元数据中可能出现的其他类型仍按类名写入，保证任何消息都能落盘。
+ */
+class KryoMessageSerializer {
+
+    // 对象池中最多缓存的 Kryo 实例数
+    private static final int MAX_POOLED_INSTANCES = 64;
+
+    // 注册 ID 一旦使用就不能修改，新增类型只能追加新的 ID
+    private static final int FIRST_REGISTRATION_ID = 100;
+
+    private final Pool<Kryo> kryoPool = new Pool<>(true, false, MAX_POOLED_INSTANCES) {
+        @Override
+        protected Kryo create() {
+            return createKryo();
+        }
+    };
+
+    byte[] serialize(Message message) {
+        Kryo kryo = kryoPool.obtain();
+        try (Output output = new Output(256, -1)) {
+            kryo.writeClassAndObject(output, message);
+            return output.toBytes();
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    Message deserialize(byte[] record) {
+        Kryo kryo = kryoPool.obtain();
+        try (Input input = new Input(record)) {
+            return (Message) kryo.readClassAndObject(input);
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 读取旧格式（整个消息列表一次性序列化）的会话文件
+     */
+    @SuppressWarnings("unchecked")
+    List<Message> deserializeLegacyList(InputStream inputStream) {
+        Kryo kryo = kryoPool.obtain();
+        try (Input input = new Input(inputStream)) {
+            return kryo.readObject(input, ArrayList.class);
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    private static Kryo createKryo() {
+        Kryo kryo = new Kryo();
+        // 未注册的类型（如元数据中的自定义对象）仍允许按类名序列化
+        kryo.setRegistrationRequired(false);
+        // 设置实例化策略，允许无参构造函数的对象创建
+        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+        int id = FIRST_REGISTRATION_ID;
+        kryo.register(ArrayList.class, id++);
+        kryo.register(HashMap.class, id++);
+        kryo.register(LinkedHashMap.class, id++);
+        kryo.register(MessageType.class, id++);
+        kryo.register(UserMessage.class, id++);
+        kryo.register(AssistantMessage.class, id++);
+        kryo.register(AssistantMessage.ToolCall.class, id++);
+        kryo.register(SystemMessage.class, id++);
+        kryo.register(ToolResponseMessage.class, id++);
+        kryo.register(ToolResponseMessage.ToolResponse.class, id++);
+        return kryo;
+    }
+}
@@ -0,0 +1,303 @@
+package com.yupi.yuaiagent.chatmemory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带写回（Write-behind）缓存的对话记忆
+ * <p>
+ * 在持久化的对话记忆（如 {@link FileBasedChatMemory}）之前加一层热点会话缓存：
+ * 每个缓存的会话保存最近 window 条消息，get 直接从内存返回，add 只写内存并记为待落盘，
+ * 后台线程按固定间隔批量把待落盘消息写入底层存储，请求路径上不再访问磁盘。
+ * 缓存的会话数超过上限或空闲超过 TTL 时，先落盘再淘汰（按最近访问时间淘汰最久未使用的会话）。
+ */
+@Slf4j
+public class WriteBehindChatMemory implements ChatMemory, AutoCloseable {
+
+    // 底层持久化的对话记忆
+    private final ChatMemory delegate;
+
+    // 最多缓存的会话数
+    private final int maxConversations;
+
+    // 每个会话在内存中保留的最近消息数，超过该数量的 get 请求会回源
+    private final int window;
+
+    // 会话空闲多久后被淘汰
+    private final long idleTtlMillis;
+
+    private final Map<String, CachedConversation> cache = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flushExecutor;
+
+    // 统计指标
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedMessages = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public WriteBehindChatMemory(ChatMemory delegate, int maxConversations, int window,
+                                 Duration idleTtl, Duration flushInterval) {
+        this.delegate = delegate;
+        this.maxConversations = maxConversations;
+        this.window = window;
+        this.idleTtlMillis = idleTtl.toMillis();
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        this.flushExecutor.scheduleWithFixedDelay(this::flushAndEvict, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        while (true) {
+            CachedConversation conversation = getOrLoad(conversationId);
+            synchronized (conversation) {
+                // 会话刚好被淘汰，重新加载后再写入
+                if (conversation.evicted) {
+                    continue;
+                }
+                conversation.recent.addAll(messages);
+                trimToWindow(conversation.recent);
+                conversation.pending.addAll(messages);
+                conversation.lastAccess = System.currentTimeMillis();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        CachedConversation cached = cache.get(conversationId);
+        if (cached != null && lastN <= window) {
+            synchronized (cached) {
+                if (!cached.evicted) {
+                    hits.increment();
+                    cached.lastAccess = System.currentTimeMillis();
+                    return lastOf(cached.recent, lastN);
+                }
+            }
+        }
+        misses.increment();
+        if (lastN > window) {
+            // 超出缓存窗口，先把该会话的待落盘消息写入底层存储，再直接回源
+            if (cached != null) {
+                flush(conversationId, cached);
+            }
+            return delegate.get(conversationId, lastN);
+        }
+        CachedConversation conversation = load(conversationId);
+        synchronized (conversation) {
+            return lastOf(conversation.recent, lastN);
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        CachedConversation conversation = cache.remove(conversationId);
+        if (conversation != null) {
+            conversation.flushLock.lock();
+            try {
+                synchronized (conversation) {
+                    conversation.evicted = true;
+                    conversation.pending.clear();
+                }
+            } finally {
+                conversation.flushLock.unlock();
+            }
+        }
+        delegate.clear(conversationId);
+    }
+
+    /**
+     * 立即把所有待落盘的消息写入底层存储
+     */
+    public void flushAll() {
+        cache.forEach(this::flush);
+    }
+
+    /**
+     * 获取缓存统计指标
+     */
+    public CacheStats getStats() {
+        int pendingMessages = 0;
+        for (CachedConversation conversation : cache.values()) {
+            synchronized (conversation) {
+                pendingMessages += conversation.pending.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), flushes.sum(), flushedMessages.sum(),
+                evictions.sum(), cache.size(), pendingMessages);
+    }
+
+    /**
+     * 关闭时停止后台线程，并把剩余的待落盘消息全部写入底层存储
+     */
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        log.info("Chat memory cache closed, stats: {}", getStats());
+    }
+
+    private CachedConversation getOrLoad(String conversationId) {
+        CachedConversation conversation = cache.get(conversationId);
+        if (conversation != null) {
+            return conversation;
+        }
+        return load(conversationId);
+    }
+
+    private CachedConversation load(String conversationId) {
+        CachedConversation conversation = cache.get(conversationId);
+        if (conversation != null) {
+            return conversation;
+        }
+        // 在 Map 的锁之外读取底层存储，并发加载同一会话时以先放入的为准
+        CachedConversation loaded = new CachedConversation();
+        loaded.recent.addAll(delegate.get(conversationId, window));
+        CachedConversation existing = cache.putIfAbsent(conversationId, loaded);
+        conversation = existing != null ? existing : loaded;
+        if (cache.size() > maxConversations && !flushExecutor.isShutdown()) {
+            try {
+                flushExecutor.execute(this::evictOverflow);
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，close 会把剩余消息落盘，不需要再淘汰
+            }
+        }
+        return conversation;
+    }
+
+    /**
+     * 后台任务：批量落盘，并淘汰空闲超时的会话和超出容量的会话
+     */
+    private void flushAndEvict() {
+        try {
+            cache.forEach(this::flush);
+            long now = System.currentTimeMillis();
+            cache.forEach((conversationId, conversation) -> {
+                if (now - conversation.lastAccess > idleTtlMillis) {
+                    evict(conversationId, conversation);
+                }
+            });
+            evictOverflow();
+        } catch (Exception e) {
+            log.error("Failed to flush chat memory cache", e);
+        }
+    }
+
+    private void evictOverflow() {
+        int overflow = cache.size() - maxConversations;
+        if (overflow <= 0) {
+            return;
+        }
+        cache.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .limit(overflow)
+                .toList()
+                .forEach(entry -> evict(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * 先落盘再淘汰；落盘期间又有新消息写入时放弃本次淘汰
+     */
+    private void evict(String conversationId, CachedConversation conversation) {
+        flush(conversationId, conversation);
+        synchronized (conversation) {
+            if (conversation.pending.isEmpty() && cache.remove(conversationId, conversation)) {
+                conversation.evicted = true;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 把会话的待落盘消息写入底层存储，flushLock 保证同一会话的批次按顺序写入
+     */
+    private void flush(String conversationId, CachedConversation conversation) {
+        conversation.flushLock.lock();
+        try {
+            List<Message> batch;
+            synchronized (conversation) {
+                if (conversation.pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(conversation.pending);
+                conversation.pending.clear();
+            }
+            delegate.add(conversationId, batch);
+            flushes.increment();
+            flushedMessages.add(batch.size());
+        } finally {
+            conversation.flushLock.unlock();
+        }
+    }
+
+    private void trimToWindow(List<Message> messages) {
+        int overflow = messages.size() - window;
+        if (overflow > 0) {
+            messages.subList(0, overflow).clear();
+        }
+    }
+
+    private static List<Message> lastOf(List<Message> messages, int lastN) {
+        return new ArrayList<>(messages.subList(Math.max(messages.size() - lastN, 0), messages.size()));
+    }
+
+    /**
+     * 缓存中的单个会话
+     */
+    private static class CachedConversation {
+
+        // 最近 window 条消息
+        private final List<Message> recent = new ArrayList<>();
+
+        // 尚未写入底层存储的消息
+        private final List<Message> pending = new ArrayList<>();
+
+        // 保证同一会话的落盘批次串行执行
+        private final ReentrantLock flushLock = new ReentrantLock();
+
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private boolean evicted;
+    }
+
+    /**
+     * 缓存统计指标
+     *
+     * @param hits            命中次数
+     * @param misses          未命中次数
+     * @param flushes         落盘批次数
+     * @param flushedMessages 落盘的消息总数
+     * @param evictions       淘汰的会话数
+     * @param size            当前缓存的会话数
+     * @param pendingMessages 当前待落盘的消息数
+     */
+    public record CacheStats(long hits, long misses, long flushes, long flushedMessages,
+                             long evictions, int size, int pendingMessages) {
+    }
+}
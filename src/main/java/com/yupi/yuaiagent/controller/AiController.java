@@ -0,0 +1,118 @@
+package com.yupi.yuaiagent.controller;
+
+import com.yupi.yuaiagent.agent.YuManus;
+import com.yupi.yuaiagent.app.LoveApp;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+
+import java.security.Principal;
+
+/**
+ * AI 应用接口
+ */
+@RestController
+@RequestMapping("/ai")
+public class AiController {
+
+    @Resource
+    private LoveApp loveApp;
+
+    @Resource
+    private YuManus yuManus;
+
+    /**
+     * 同步调用 AI 恋爱大师应用
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    @GetMapping("/love_app/chat/sync")
+    public String doChatWithLoveAppSync(String message, String chatId) {
+        return loveApp.doChat(message, chatId);
+    }
+
+    /**
+     * SSE 流式调用 AI 恋爱大师应用
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    @GetMapping(value = "/love_app/chat/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> doChatWithLoveAppSSE(String message, String chatId) {
+        return loveApp.doChatByStream(message, chatId);
+    }
+
+    /**
+     * SSE 流式调用 AI 恋爱大师应用（ServerSentEvent 格式）
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    @GetMapping(value = "/love_app/chat/server_sent_event")
+    public Flux<ServerSentEvent<String>> doChatWithLoveAppServerSentEvent(String message, String chatId) {
+        return loveApp.doChatByStream(message, chatId)
+                .map(chunk -> ServerSentEvent.<String>builder()
+                        .data(chunk)
+                        .build());
+    }
+
+    /**
+     * SSE 流式调用 AI 恋爱大师应用（RAG 知识库）
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    @GetMapping(value = "/love_app/chat/rag/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> doChatWithLoveAppRagSSE(String message, String chatId) {
+        return loveApp.doChatWithRagByStream(message, chatId);
+    }
+
+    /**
+     * SSE 流式调用 AI 恋爱大师应用（工具调用）
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    @GetMapping(value = "/love_app/chat/tools/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> doChatWithLoveAppToolsSSE(String message, String chatId) {
+        return loveApp.doChatWithToolsByStream(message, chatId);
+    }
+
+    /**
+     * SSE 流式调用 AI 恋爱大师应用（MCP 服务）
+     *
+     * @param message
+     * @param chatId
+     * @return
+     */
+    @GetMapping(value = "/love_app/chat/mcp/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> doChatWithLoveAppMcpSSE(String message, String chatId) {
+        return loveApp.doChatWithMcpByStream(message, chatId);
+    }
+
+    /**
+     * 流式调用 Manus 超级智能体
+     *
+     * @param message
+     * @param request  租户由服务端确定：已认证用户按用户名，否则按客户端地址
+     * @return
+     */
+    @GetMapping("/manus/chat")
+    public SseEmitter doChatWithManus(String message, HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        String tenantId = principal != null ? "user:" + principal.getName() : "ip:" + request.getRemoteAddr();
+        return yuManus.runStream(message, tenantId);
+    }
+}
@@ -1,8 +1,21 @@
 package com.yupi.yuaiagent.controller;
 
+import com.yupi.yuaiagent.advisor.SemanticCacheAdvisor;
+import com.yupi.yuaiagent.agent.AgentExecutionEngine;
+import com.yupi.yuaiagent.chatmemory.WriteBehindChatMemory;
 import com.yupi.yuaiagent.demo.rag.MultiQueryExpanderDemo;
+import com.yupi.yuaiagent.rag.CachingEmbeddingModel;
+import com.yupi.yuaiagent.rag.QueryRewriter;
+import com.yupi.yuaiagent.rag.VectorStoreWarmup;
+import com.yupi.yuaiagent.rag.WarmingVectorStore;
+import com.yupi.yuaiagent.tools.ResourceDownloadTool;
+import com.yupi.yuaiagent.tools.ToolHttpClient;
+import com.yupi.yuaiagent.tools.ToolResponseCache;
 import jakarta.annotation.Resource;
 import org.springframework.ai.rag.Query;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -19,8 +32,109 @@ public class HealthController {
     @Resource
     private MultiQueryExpanderDemo queryExpander;
 
+    @Resource
+    private WriteBehindChatMemory loveAppChatMemory;
+
+    @Resource
+    private AgentExecutionEngine agentExecutionEngine;
+
+    @Resource
+    private ToolResponseCache toolResponseCache;
+
+    @Resource
+    private ToolHttpClient toolHttpClient;
+
+    @Resource
+    private ResourceDownloadTool resourceDownloadTool;
+
+    @Resource
+    private CachingEmbeddingModel cachingEmbeddingModel;
+
+    @Resource
+    private QueryRewriter queryRewriter;
+
+    @Resource
+    private VectorStoreWarmup vectorStoreWarmup;
+
+    @Resource
+    private ObjectProvider<SemanticCacheAdvisor> loveAppSemanticCacheAdvisor;
+
+    /**
+     * 就绪检查：所有向量存储预热完成时返回 200，否则返回 503 和各向量存储的状态
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, WarmingVectorStore.Readiness>> ready() {
+        HttpStatus status = vectorStoreWarmup.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(vectorStoreWarmup.getReadiness());
+    }
+
     @GetMapping("/expand")
     public List<Query> expandQuery(@RequestParam String query) {
         return queryExpander.expand(query);
     }
+
+    /**
+     * 对话记忆缓存的命中、落盘等统计指标
+     */
+    @GetMapping("/chat-memory")
+    public WriteBehindChatMemory.CacheStats chatMemoryStats() {
+        return loveAppChatMemory.getStats();
+    }
+
+    /**
+     * 智能体执行引擎的排队、运行等统计指标
+     */
+    @GetMapping("/agent-executor")
+    public AgentExecutionEngine.EngineStats agentExecutorStats() {
+        return agentExecutionEngine.getStats();
+    }
+
+    /**
+     * 搜索、抓取工具响应缓存的命中、合并等统计指标
+     */
+    @GetMapping("/tool-cache")
+    public ToolResponseCache.CacheStats toolCacheStats() {
+        return toolResponseCache.getStats();
+    }
+
+    /**
+     * 工具共享 HTTP 客户端的请求、超时等统计指标
+     */
+    @GetMapping("/tool-http")
+    public ToolHttpClient.HttpStats toolHttpStats() {
+        return toolHttpClient.getStats();
+    }
+
+    /**
+     * 资源下载的续传、去重、超限等统计指标
+     */
+    @GetMapping("/downloads")
+    public ResourceDownloadTool.DownloadStats downloadStats() {
+        return resourceDownloadTool.getStats();
+    }
+
+    /**
+     * 查询向量缓存的命中率等统计指标
+     */
+    @GetMapping("/embedding-cache")
+    public CachingEmbeddingModel.CacheStats embeddingCacheStats() {
+        return cachingEmbeddingModel.getStats();
+    }
+
+    /**
+     * 恋爱大师语义缓存的命中率等统计指标，未启用语义缓存时返回空
+     */
+    @GetMapping("/semantic-cache")
+    public SemanticCacheAdvisor.CacheStats semanticCacheStats() {
+        SemanticCacheAdvisor advisor = loveAppSemanticCacheAdvisor.getIfAvailable();
+        return advisor == null ? null : advisor.getStats();
+    }
+
+    /**
+     * 查询重写的缓存命中、跳过、超时等统计指标
+     */
+    @GetMapping("/query-rewrite")
+    public QueryRewriter.RewriteStats queryRewriteStats() {
+        return queryRewriter.getStats();
+    }
 }
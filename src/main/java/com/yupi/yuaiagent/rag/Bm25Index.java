@@ -0,0 +1,241 @@
+package com.yupi.yuaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 进程内的 BM25 倒排索引
+ * <p>
+ * 与向量存储一起构建，用于关键词检索：中文按相邻两字（bigram）切分，连续的字母数字按单词切分并转为小写，
+ * MyKeywordEnricher 补充的关键词也一并索引。每个词项的倒排表是紧凑的 int 数组（文档序号 + 词频），
+ * 检索时不需要调用嵌入模型。过滤条件优先用元数据位图索引求出匹配的文档，否则与 SimpleVectorStore 一样按 SpEL 求值。
+ */
+@Slf4j
+public class Bm25Index {
+
+    // 词频饱和参数
+    private static final float K1 = 1.2f;
+
+    // 文档长度归一化参数
+    private static final float B = 0.75f;
+
+    private final ExpressionParser expressionParser = new SpelExpressionParser();
+
+    private final SimpleVectorStoreFilterExpressionConverter filterExpressionConverter = new SimpleVectorStoreFilterExpressionConverter();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词项 -> 倒排表
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private final List<String> ids = new ArrayList<>();
+
+    private final List<String> texts = new ArrayList<>();
+
+    private final List<Map<String, Object>> metadataList = new ArrayList<>();
+
+    // 元数据位图索引，用于过滤检索
+    private final MetadataBitmapIndex metadataBitmaps = new MetadataBitmapIndex();
+
+    // 每个文档的词项数
+    private int[] docLengths = new int[16];
+
+    private long totalLength;
+
+    /**
+     * 把文档加入索引
+     */
+    public void addAll(List<Document> documents) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : documents) {
+                int doc = ids.size();
+                String text = Objects.toString(document.getText(), "");
+                List<String> tokens = tokenize(text);
+                Object keywords = document.getMetadata().get(MyKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY);
+                if (keywords != null) {
+                    tokens.addAll(tokenize(keywords.toString()));
+                }
+                Map<String, Integer> termFrequencies = new HashMap<>();
+                for (String token : tokens) {
+                    termFrequencies.merge(token, 1, Integer::sum);
+                }
+                termFrequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new Postings()).add(doc, tf));
+                ids.add(document.getId());
+                texts.add(text);
+                metadataList.add(document.getMetadata());
+                metadataBitmaps.add(doc, document.getMetadata());
+                if (doc == docLengths.length) {
+                    docLengths = Arrays.copyOf(docLengths, doc * 2);
+                }
+                docLengths[doc] = tokens.size();
+                totalLength += tokens.size();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("BM25 索引已更新：{} 个文档，{} 个词项", size(), postings.size());
+    }
+
+    /**
+     * 关键词检索
+     *
+     * @param query            查询文本
+     * @param topK             返回的文档数
+     * @param filterExpression 元数据过滤条件，可以为 null
+     * @return 按 BM25 得分从高到低排列的文档，得分写入 Document.score
+     */
+    public List<Document> search(String query, int topK, Filter.Expression filterExpression) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            int n = ids.size();
+            if (n == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            BitSet candidates = filterExpression == null ? null : metadataBitmaps.resolve(filterExpression, n);
+            IntPredicate predicate = filterExpression == null ? doc -> true
+                    : candidates != null ? candidates::get : filterPredicate(filterExpression);
+            float avgLength = Math.max(1f, (float) totalLength / n);
+            float[] scores = new float[n];
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (n - termPostings.size + 0.5) / (termPostings.size + 0.5));
+                for (int i = 0; i < termPostings.size; i++) {
+                    int doc = termPostings.docs[i];
+                    int tf = termPostings.freqs[i];
+                    float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            // 小顶堆保留得分最高的 topK 个文档
+            PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> Float.compare(scores[a], scores[b]));
+            for (int doc = 0; doc < n; doc++) {
+                if (scores[doc] <= 0 || (heap.size() >= topK && scores[doc] <= scores[heap.peek()])) {
+                    continue;
+                }
+                if (!predicate.test(doc)) {
+                    continue;
+                }
+                heap.offer(doc);
+                if (heap.size() > topK) {
+                    heap.poll();
+                }
+            }
+            List<Document> results = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                int doc = heap.poll();
+                results.add(Document.builder()
+                        .id(ids.get(doc))
+                        .text(texts.get(doc))
+                        .metadata(new HashMap<>(metadataList.get(doc)))
+                        .score((double) scores[doc])
+                        .build());
+            }
+            return results.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 分词：中文按相邻两字切分（单独的一个汉字保留为单字），连续的字母数字作为一个小写单词，其余字符作为分隔符
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                int end = i;
+                while (end < text.length() && Character.UnicodeScript.of(text.charAt(end)) == Character.UnicodeScript.HAN) {
+                    end++;
+                }
+                if (end - i == 1) {
+                    tokens.add(String.valueOf(c));
+                }
+                for (int j = i; j + 1 < end; j++) {
+                    tokens.add(text.substring(j, j + 2));
+                }
+                i = end;
+            } else if (Character.isLetterOrDigit(c)) {
+                int end = i;
+                while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))
+                        && Character.UnicodeScript.of(text.charAt(end)) != Character.UnicodeScript.HAN) {
+                    end++;
+                }
+                tokens.add(text.substring(i, end).toLowerCase());
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private IntPredicate filterPredicate(Filter.Expression filterExpression) {
+        Expression expression = expressionParser.parseExpression(filterExpressionConverter.convertExpression(filterExpression));
+        return doc -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadataList.get(doc));
+            return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+        };
+    }
+
+    /**
+     * 倒排表：按文档序号递增排列的文档序号和词频
+     */
+    private static final class Postings {
+
+        private int[] docs = new int[4];
+
+        private int[] freqs = new int[4];
+
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+}
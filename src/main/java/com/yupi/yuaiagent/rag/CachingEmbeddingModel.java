@@ -0,0 +1,228 @@
+package com.yupi.yuaiagent.rag;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带缓存的嵌入模型装饰器
+ * <p>
+ * 每次 RAG 对话都要先把（改写后的）用户问题嵌入成向量再检索，而相同或几乎相同的问题非常常见。
+ * 这里按「模型名称 + 归一化文本」缓存向量：内存中的 LRU 缓存，可选的磁盘缓存；
+ * 相同文本的并发请求只调用一次底层模型；未命中的文本合并为一次批量请求。
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    // 默认的模型名称，请求选项中指定了模型时以请求为准
+    private final String modelName;
+
+    private final LRUCache<String, float[]> memoryCache;
+
+    // 磁盘缓存目录，为 null 时不启用
+    private final Path diskDir;
+
+    // 正在请求中的文本，用于合并并发的相同请求
+    private final ConcurrentMap<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param delegate   底层嵌入模型
+     * @param modelName  模型名称，参与缓存键计算
+     * @param maxEntries 内存缓存容量
+     * @param diskDir    磁盘缓存目录，为 null 时不启用磁盘缓存
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, int maxEntries, String diskDir) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.memoryCache = CacheUtil.newLRUCache(maxEntries);
+        this.diskDir = diskDir == null ? null : Paths.get(diskDir);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        EmbeddingOptions options = request.getOptions();
+        String model = options != null && options.getModel() != null ? options.getModel() : modelName;
+        List<String> texts = request.getInstructions();
+        float[][] results = new float[texts.size()][];
+        // 1、查缓存；未命中的文本由当前线程负责请求，已有其他线程在请求的等待其结果
+        Map<String, CompletableFuture<float[]>> owned = new LinkedHashMap<>();
+        Map<String, String> ownedTexts = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<float[]>> waiting = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = cacheKey(model, texts.get(i));
+            float[] cached = lookup(key);
+            if (cached != null) {
+                results[i] = cached;
+                continue;
+            }
+            CompletableFuture<float[]> future = owned.get(key);
+            if (future == null) {
+                CompletableFuture<float[]> created = new CompletableFuture<>();
+                CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, created);
+                if (existing == null) {
+                    owned.put(key, created);
+                    ownedTexts.put(key, texts.get(i));
+                    future = created;
+                    misses.incrementAndGet();
+                } else {
+                    future = existing;
+                    coalesced.incrementAndGet();
+                }
+            }
+            waiting.put(i, future);
+        }
+        // 2、未命中的文本合并为一次批量请求
+        if (!owned.isEmpty()) {
+            List<String> keys = new ArrayList<>(owned.keySet());
+            List<String> missTexts = new ArrayList<>(ownedTexts.values());
+            try {
+                EmbeddingResponse response = delegate.call(new EmbeddingRequest(missTexts, options));
+                for (int i = 0; i < keys.size(); i++) {
+                    float[] embedding = response.getResults().get(i).getOutput();
+                    memoryCache.put(keys.get(i), embedding);
+                    writeDisk(keys.get(i), embedding);
+                    owned.get(keys.get(i)).complete(embedding);
+                }
+            } catch (RuntimeException e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+        // 3、按原始顺序组装结果
+        for (Map.Entry<Integer, CompletableFuture<float[]>> entry : waiting.entrySet()) {
+            try {
+                results[entry.getKey()] = entry.getValue().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+        List<Embedding> embeddings = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            embeddings.add(new Embedding(results[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    /**
+     * 文档嵌入时底层模型可能会拼接元数据，直接交给底层模型处理
+     */
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public CacheStats getStats() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get() + coalesced.get();
+        return new CacheStats(memoryHits.get(), diskHits.get(), misses.get(), coalesced.get(), memoryCache.size(),
+                total == 0 ? 0 : (double) hits / total);
+    }
+
+    /**
+     * 缓存键：模型名称 + 去掉首尾空白、合并连续空白后的文本
+     */
+    private static String cacheKey(String model, String text) {
+        return model + ":" + (text == null ? "" : text.trim().replaceAll("\\s+", " "));
+    }
+
+    private float[] lookup(String key) {
+        float[] embedding = memoryCache.get(key);
+        if (embedding != null) {
+            memoryHits.incrementAndGet();
+            return embedding;
+        }
+        embedding = readDisk(key);
+        if (embedding != null) {
+            diskHits.incrementAndGet();
+            memoryCache.put(key, embedding);
+        }
+        return embedding;
+    }
+
+    private Path diskPath(String key) {
+        return diskDir.resolve(SecureUtil.sha256(key) + ".emb");
+    }
+
+    private float[] readDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        try {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            float[] embedding = new float[buffer.getInt()];
+            buffer.asFloatBuffer().get(embedding);
+            return embedding;
+        } catch (Exception e) {
+            log.warn("读取向量缓存文件失败：{}", path, e);
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, float[] embedding) {
+        if (diskDir == null) {
+            return;
+        }
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(diskDir);
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + embedding.length * Float.BYTES);
+            buffer.putInt(embedding.length);
+            buffer.asFloatBuffer().put(embedding);
+            Path tmp = Files.createTempFile(diskDir, "emb", ".tmp");
+            Files.write(tmp, buffer.array());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入向量缓存文件失败：{}", path, e);
+        }
+    }
+
+    /**
+     * 缓存统计指标
+     */
+    public record CacheStats(long memoryHits, long diskHits, long misses, long coalesced, int size, double hitRate) {
+    }
+}
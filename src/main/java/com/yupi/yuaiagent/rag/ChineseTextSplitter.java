@@ -0,0 +1,194 @@
+package com.yupi.yuaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentTransformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 面向中文的文本切分器
+ * <p>
+ * TokenTextSplitter 对每个块反复做 BPE 编码、解码，断句规则也是按英文标点设计的，切分中文问答文档时块的边界很差。
+ * 这里对每个文档只扫描一遍：按中英文句末标点和换行断句，Markdown 标题作为硬边界，同时用 TokenEstimator 估算每句的 Token 数；
+ * 然后按 Token 预算把相邻的句子装进块中，新块开头带上上一块末尾的若干句作为重叠窗口。
+ * 句子在原文中是连续的，每个块直接截取原文的一段，不需要拼接字符串。多个文档用并行流切分。
+ */
+public class ChineseTextSplitter implements DocumentTransformer {
+
+    // 句末标点
+    private static final String SENTENCE_ENDS = "。！？；!?;…\n";
+
+    // 每个块的 Token 上限
+    private final int chunkSize;
+
+    // 相邻块之间重叠的 Token 上限
+    private final int overlap;
+
+    public ChineseTextSplitter(int chunkSize, int overlap) {
+        if (chunkSize <= 0 || overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize + " or overlap " + overlap);
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+    }
+
+    /**
+     * 并行切分文档，结果顺序与输入一致，每个块继承原文档的元数据
+     */
+    @Override
+    public List<Document> apply(List<Document> documents) {
+        return documents.parallelStream()
+                .flatMap(document -> splitText(document.getText()).stream()
+                        .map(chunk -> new Document(chunk, new HashMap<>(document.getMetadata()))))
+                .toList();
+    }
+
+    /**
+     * 切分文本
+     */
+    public List<String> splitText(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        Sentences sentences = scan(text);
+        List<String> chunks = new ArrayList<>();
+        int first = 0;
+        int tokens = 0;
+        boolean hasBody = false;
+        for (int s = 0; s < sentences.count; s++) {
+            if (sentences.heading[s] && hasBody) {
+                // 标题开始新的块，重叠窗口不跨越标题
+                addChunk(chunks, text, sentences, first, s - 1);
+                first = s;
+                tokens = 0;
+                hasBody = false;
+            } else if (tokens + sentences.tokens[s] > chunkSize && s > first) {
+                addChunk(chunks, text, sentences, first, s - 1);
+                // 从上一块末尾往前取不超过重叠上限的句子，且新块的起点必须前进
+                int start = s;
+                int overlapTokens = 0;
+                while (start - 1 > first && !sentences.heading[start - 1]
+                        && overlapTokens + sentences.tokens[start - 1] <= overlap) {
+                    start--;
+                    overlapTokens += sentences.tokens[start];
+                }
+                // 重叠窗口加上当前句会超出块上限时逐句缩小窗口，直到放得下或不再重叠
+                while (start < s && overlapTokens + sentences.tokens[s] > chunkSize) {
+                    overlapTokens -= sentences.tokens[start];
+                    start++;
+                }
+                first = start;
+                tokens = overlapTokens;
+            }
+            tokens += sentences.tokens[s];
+            hasBody |= !sentences.heading[s];
+        }
+        addChunk(chunks, text, sentences, first, sentences.count - 1);
+        return chunks;
+    }
+
+    private static void addChunk(List<String> chunks, String text, Sentences sentences, int first, int last) {
+        if (first > last) {
+            return;
+        }
+        String chunk = text.substring(sentences.starts[first], sentences.ends[last]).strip();
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+    }
+
+    /**
+     * 扫描一遍原文，得到每个句子的起止位置、Token 数以及是否为标题；超过块上限的长句强制断开
+     */
+    private Sentences scan(String text) {
+        Sentences sentences = new Sentences(Math.max(16, text.length() / 32));
+        int start = 0;
+        // 当前句子的汉字数、其他字符数和非空白字符数
+        int han = 0;
+        int others = 0;
+        int visible = 0;
+        boolean lineStart = true;
+        boolean heading = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // 行首的 # 是 Markdown 标题，前面的内容单独成句
+            if (lineStart && c == '#') {
+                if (visible > 0) {
+                    sentences.add(start, i, TokenEstimator.estimate(han, others), heading);
+                    han = 0;
+                    others = 0;
+                    visible = 0;
+                }
+                start = i;
+                heading = true;
+            }
+            if (TokenEstimator.isHan(c)) {
+                han++;
+            } else {
+                others++;
+            }
+            if (!Character.isWhitespace(c)) {
+                visible++;
+            }
+            lineStart = c == '\n';
+            if (SENTENCE_ENDS.indexOf(c) >= 0 || TokenEstimator.estimate(han, others) >= chunkSize) {
+                if (visible > 0) {
+                    sentences.add(start, i + 1, TokenEstimator.estimate(han, others), heading);
+                } else if (sentences.count > 0) {
+                    // 只有空白的片段并入上一句
+                    sentences.ends[sentences.count - 1] = i + 1;
+                }
+                start = i + 1;
+                han = 0;
+                others = 0;
+                visible = 0;
+                heading = false;
+            }
+        }
+        if (visible > 0) {
+            sentences.add(start, text.length(), TokenEstimator.estimate(han, others), heading);
+        }
+        return sentences;
+    }
+
+    /**
+     * 句子的起止位置和 Token 数，用基本类型数组保存，避免为每个句子创建对象
+     */
+    private static final class Sentences {
+
+        private int[] starts;
+
+        private int[] ends;
+
+        private int[] tokens;
+
+        private boolean[] heading;
+
+        private int count;
+
+        Sentences(int capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+            tokens = new int[capacity];
+            heading = new boolean[capacity];
+        }
+
+        void add(int start, int end, int tokenCount, boolean isHeading) {
+            if (count == starts.length) {
+                int capacity = count * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                tokens = Arrays.copyOf(tokens, capacity);
+                heading = Arrays.copyOf(heading, capacity);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            tokens[count] = tokenCount;
+            heading[count] = isHeading;
+            count++;
+        }
+    }
+}
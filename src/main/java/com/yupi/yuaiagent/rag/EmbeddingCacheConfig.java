@@ -0,0 +1,35 @@
+package com.yupi.yuaiagent.rag;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 嵌入模型缓存配置
+ * 在 DashScope 嵌入模型外包装一层缓存，供向量存储使用
+ */
+@Configuration
+public class EmbeddingCacheConfig {
+
+    // 嵌入模型名称，参与缓存键计算
+    @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v2}")
+    private String modelName;
+
+    // 内存缓存容量
+    @Value("${rag.embedding-cache.max-entries:10000}")
+    private int maxEntries;
+
+    // 是否启用磁盘缓存
+    @Value("${rag.embedding-cache.disk-enabled:false}")
+    private boolean diskEnabled;
+
+    // 磁盘缓存目录
+    @Value("${rag.embedding-cache.dir:${user.dir}/tmp/embedding-cache}")
+    private String dir;
+
+    @Bean
+    public CachingEmbeddingModel cachingEmbeddingModel(EmbeddingModel dashscopeEmbeddingModel) {
+        return new CachingEmbeddingModel(dashscopeEmbeddingModel, modelName, maxEntries, diskEnabled ? dir : null);
+    }
+}
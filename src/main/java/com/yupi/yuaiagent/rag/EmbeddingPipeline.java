@@ -0,0 +1,199 @@
+package com.yupi.yuaiagent.rag;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 批量、并行的文档嵌入入库流水线
+ * <p>
+ * 直接把全部文档交给 VectorStore.add 时，分批方式由向量存储决定，也没有并发控制。这里先按 Token 预算
+ * 和条数上限把文档分成批次，再在虚拟线程上以有限的并发度逐批写入向量存储（每批由向量存储完成嵌入），
+ * 遇到限流、服务端错误或网络超时时按指数退避重试（其他错误立即失败），最后输出吞吐统计，重建大规模知识库的耗时由 API 配额而不是串行往返决定。
+ */
+@Component
+@Slf4j
+public class EmbeddingPipeline {
+
+    // 每批的 Token 预算
+    private final int maxTokensPerBatch;
+
+    // 每批的文档数上限（DashScope 嵌入接口单次最多 25 条）
+    private final int maxBatchSize;
+
+    // 同时进行的批次数
+    private final int parallelism;
+
+    // 单批最大重试次数
+    private final int maxRetries;
+
+    // 首次重试的退避时间，之后每次翻倍
+    private final Duration initialBackoff;
+
+    // 错误消息开头的 HTTP 状态码
+    private static final Pattern STATUS_PREFIX = Pattern.compile("^\\s*(\\d{3})\\b");
+
+    public EmbeddingPipeline(@Value("${rag.embedding.max-tokens-per-batch:8000}") int maxTokensPerBatch,
+                             @Value("${rag.embedding.max-batch-size:25}") int maxBatchSize,
+                             @Value("${rag.embedding.parallelism:4}") int parallelism,
+                             @Value("${rag.embedding.max-retries:5}") int maxRetries,
+                             @Value("${rag.embedding.initial-backoff:1s}") Duration initialBackoff) {
+        this.maxTokensPerBatch = maxTokensPerBatch;
+        this.maxBatchSize = maxBatchSize;
+        this.parallelism = parallelism;
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * 分批并行嵌入并写入向量存储，任意批次重试后仍失败时抛出异常
+     *
+     * @param documents   待入库的文档
+     * @param vectorStore 目标向量存储
+     * @return 吞吐统计
+     */
+    public PipelineStats ingest(List<Document> documents, VectorStore vectorStore) {
+        long start = System.currentTimeMillis();
+        List<List<Document>> batches = toBatches(documents);
+        long totalTokens = documents.stream().mapToLong(document -> TokenEstimator.estimate(document.getText())).sum();
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicInteger retries = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+            for (List<Document> batch : batches) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        addWithRetry(batch, vectorStore, retries);
+                    } finally {
+                        permits.release();
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        PipelineStats stats = new PipelineStats(documents.size(), totalTokens, batches.size(), retries.get(), elapsed,
+                documents.size() * 1000.0 / elapsed, totalTokens * 1000.0 / elapsed);
+        log.info("文档嵌入完成：{} 条，约 {} tokens，{} 批，重试 {} 次，耗时 {} ms，{} 条/秒，{} tokens/秒",
+                stats.chunks(), stats.tokens(), stats.batches(), stats.retries(), stats.elapsedMillis(),
+                String.format("%.1f", stats.chunksPerSecond()), String.format("%.1f", stats.tokensPerSecond()));
+        return stats;
+    }
+
+    /**
+     * 按 Token 预算和条数上限分批，超出预算的单个文档独占一批
+     */
+    List<List<Document>> toBatches(List<Document> documents) {
+        List<List<Document>> batches = new ArrayList<>();
+        List<Document> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (Document document : documents) {
+            int tokens = TokenEstimator.estimate(document.getText());
+            if (!current.isEmpty() && (currentTokens + tokens > maxTokensPerBatch || current.size() >= maxBatchSize)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(document);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private void addWithRetry(List<Document> batch, VectorStore vectorStore, AtomicInteger retries) {
+        long backoff = initialBackoff.toMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                vectorStore.add(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    // 请求错误、鉴权失败、输入超长等重试也不会成功，直接失败，避免白白拖慢预热
+                    log.error("文档批次嵌入失败，错误不可重试", e);
+                    throw e;
+                }
+                if (attempt >= maxRetries) {
+                    log.error("文档批次嵌入失败，已重试 {} 次", attempt, e);
+                    throw e;
+                }
+                retries.incrementAndGet();
+                // 指数退避并加随机抖动，避免多个批次同时重试再次触发限流
+                long sleep = backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                log.warn("文档批次嵌入失败（{}），{} ms 后第 {} 次重试", e.getMessage(), sleep, attempt + 1);
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff *= 2;
+            }
+        }
+    }
+
+    /**
+     * 判断嵌入失败是否值得重试：限流（429）、服务端错误（5xx）、I/O 或超时
+     * <p>
+     * Spring AI 把 HTTP 错误包装成 "状态码 - 响应体" 形式的消息，没有结构化状态码时按消息开头的状态码判断
+     */
+    static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientAiException
+                    || cause instanceof IOException
+                    || cause instanceof TimeoutException
+                    || cause instanceof ResourceAccessException) {
+                return true;
+            }
+            if (cause instanceof RestClientResponseException responseException) {
+                return isRetryableStatus(responseException.getStatusCode().value());
+            }
+            if (cause instanceof WebClientResponseException responseException) {
+                return isRetryableStatus(responseException.getStatusCode().value());
+            }
+            Matcher matcher = STATUS_PREFIX.matcher(StrUtil.nullToEmpty(cause.getMessage()));
+            if (matcher.find() && isRetryableStatus(Integer.parseInt(matcher.group(1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * 吞吐统计
+     */
+    public record PipelineStats(int chunks, long tokens, int batches, int retries, long elapsedMillis,
+                                double chunksPerSecond, double tokensPerSecond) {
+    }
+}
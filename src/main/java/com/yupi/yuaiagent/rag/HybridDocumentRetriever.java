@@ -0,0 +1,137 @@
+package com.yupi.yuaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 关键词 + 向量的混合检索器
+ * <p>
+ * 向量检索在虚拟线程上执行，同时在当前线程做 BM25 关键词检索，两路结果按倒数排名融合（RRF）：
+ * 文档得分为各路排名 1 / (k + rank) 之和，不需要把两种得分换算到同一尺度。
+ * 向量检索（主要是查询嵌入）超过时限或失败时，直接返回关键词检索的结果。
+ */
+@Slf4j
+public class HybridDocumentRetriever implements DocumentRetriever {
+
+    // RRF 的平滑常数，常用取值 60
+    static final int DEFAULT_RRF_K = 60;
+
+    // 每路检索的候选数是最终返回数的倍数
+    private static final int CANDIDATE_MULTIPLIER = 4;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final VectorStore vectorStore;
+
+    private final Bm25Index bm25Index;
+
+    private final Filter.Expression filterExpression;
+
+    private final double similarityThreshold;
+
+    private final int topK;
+
+    // 等待向量检索的时限
+    private final Duration vectorTimeout;
+
+    /**
+     * @param vectorStore         向量存储
+     * @param bm25Index           与向量存储内容相同的关键词索引
+     * @param filterExpression    元数据过滤条件，可以为 null
+     * @param similarityThreshold 向量检索的相似度阈值
+     * @param topK                返回的文档数
+     * @param vectorTimeout       等待向量检索的时限，超时只使用关键词检索结果
+     */
+    public HybridDocumentRetriever(VectorStore vectorStore, Bm25Index bm25Index, Filter.Expression filterExpression,
+                                   double similarityThreshold, int topK, Duration vectorTimeout) {
+        this.vectorStore = vectorStore;
+        this.bm25Index = bm25Index;
+        this.filterExpression = filterExpression;
+        this.similarityThreshold = similarityThreshold;
+        this.topK = topK;
+        this.vectorTimeout = vectorTimeout;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        int candidates = topK * CANDIDATE_MULTIPLIER;
+        SearchRequest.Builder requestBuilder = SearchRequest.builder()
+                .query(query.text())
+                .topK(candidates)
+                .similarityThreshold(similarityThreshold);
+        if (filterExpression != null) {
+            requestBuilder.filterExpression(filterExpression);
+        }
+        SearchRequest searchRequest = requestBuilder.build();
+        // 1、向量检索和关键词检索并行执行
+        CompletableFuture<List<Document>> vectorFuture = CompletableFuture.supplyAsync(
+                () -> vectorStore.similaritySearch(searchRequest), executor);
+        List<Document> lexicalResults = bm25Index.search(query.text(), candidates, filterExpression);
+        // 2、等待向量检索，超时或失败时只使用关键词检索结果
+        List<Document> vectorResults;
+        try {
+            vectorResults = vectorFuture.get(vectorTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("向量检索超过 {} ms，仅使用关键词检索结果：{}", vectorTimeout.toMillis(), query.text());
+            vectorFuture.cancel(true);
+            return lexicalResults.subList(0, Math.min(topK, lexicalResults.size()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return lexicalResults.subList(0, Math.min(topK, lexicalResults.size()));
+        } catch (ExecutionException e) {
+            log.warn("向量检索失败，仅使用关键词检索结果：{}", query.text(), e.getCause());
+            return lexicalResults.subList(0, Math.min(topK, lexicalResults.size()));
+        }
+        // 3、倒数排名融合
+        return fuse(List.of(vectorResults, lexicalResults), topK, DEFAULT_RRF_K);
+    }
+
+    /**
+     * 倒数排名融合：同一文档在各路结果中的得分 1 / (k + rank) 相加，按总分排序
+     *
+     * @param rankings 各路检索结果，每路按相关度从高到低排列
+     * @param topK     返回的文档数
+     * @param k        平滑常数
+     * @return 融合后的文档，融合得分写入 Document.score
+     */
+    static List<Document> fuse(List<List<Document>> rankings, int topK, int k) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                scores.merge(document.getId(), 1.0 / (k + rank + 1), Double::sum);
+                documents.putIfAbsent(document.getId(), document);
+            }
+        }
+        List<Document> fused = new ArrayList<>(documents.size());
+        documents.values().stream()
+                .sorted((a, b) -> Double.compare(scores.get(b.getId()), scores.get(a.getId())))
+                .limit(topK)
+                .forEach(document -> fused.add(Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(document.getMetadata())
+                        .score(scores.get(document.getId()))
+                        .build()));
+        return fused;
+    }
+}
@@ -0,0 +1,143 @@
+package com.yupi.yuaiagent.rag;
+
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 基于内容哈希的增量文档入库
+ * <p>
+ * 每个文档块按「正文 + 来源文件名」计算 SHA-256，哈希写入元数据，并由哈希派生确定性的 UUID 作为文档 ID。
+ * 启动时只查询表中已有的 ID 和来源文件名做差异比对：内容未变的块直接跳过，只有新增或修改的块才调用嵌入模型。
+ * 删除按文件进行：只有本次完整解析成功的文件，才会删除它在表中已不存在的块；解析失败或未加载到的文件保留原有的行，
+ * 本次没有加载到任何文档时不删除任何行，避免一次失败的启动清空向量表。
+ */
+@Slf4j
+public class IncrementalDocumentIngestor {
+
+    // 元数据中保存内容哈希的键
+    public static final String CONTENT_HASH_KEY = "content_hash";
+
+    // 每批删除的 ID 数
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 带 schema 的表名，如 public.vector_store
+    private final String tableName;
+
+    private final EmbeddingPipeline embeddingPipeline;
+
+    public IncrementalDocumentIngestor(JdbcTemplate jdbcTemplate, String tableName, EmbeddingPipeline embeddingPipeline) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.embeddingPipeline = embeddingPipeline;
+    }
+
+    /**
+     * 把文档增量同步到向量存储，只对文档中出现的来源文件做删除
+     *
+     * @see #ingest(VectorStore, List, Set)
+     */
+    public IngestionResult ingest(VectorStore vectorStore, List<Document> documents) {
+        Set<String> sources = new HashSet<>();
+        for (Document document : documents) {
+            Object filename = document.getMetadata().get("filename");
+            if (filename != null) {
+                sources.add(filename.toString());
+            }
+        }
+        return ingest(vectorStore, documents, sources);
+    }
+
+    /**
+     * 把文档增量同步到向量存储
+     *
+     * @param vectorStore     向量存储
+     * @param documents       本次加载的文档
+     * @param completeSources 本次完整解析成功的来源文件名，只删除这些文件中已不存在的块
+     * @return 同步结果
+     */
+    public IngestionResult ingest(VectorStore vectorStore, List<Document> documents, Set<String> completeSources) {
+        long start = System.currentTimeMillis();
+        // 1、计算哈希和确定性 ID，相同内容的块只保留一个
+        Map<String, Document> desired = new LinkedHashMap<>();
+        for (Document document : documents) {
+            Document hashed = withContentHash(document);
+            desired.putIfAbsent(hashed.getId(), hashed);
+        }
+        // 2、查询表中已有的 ID 及其来源文件名
+        Map<String, String> existing = new HashMap<>();
+        jdbcTemplate.query("SELECT id::text, metadata->>'filename' FROM " + tableName,
+                (RowCallbackHandler) rs -> existing.put(rs.getString(1), rs.getString(2)));
+        Set<String> existingIds = existing.keySet();
+        // 3、删除完整解析成功的文件中已不存在的块
+        List<String> toDelete = List.of();
+        if (desired.isEmpty()) {
+            log.warn("本次没有加载到任何文档，跳过删除，保留向量表中已有的 {} 行", existing.size());
+        } else {
+            toDelete = existing.entrySet().stream()
+                    .filter(entry -> !desired.containsKey(entry.getKey()) && completeSources.contains(entry.getValue()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+        for (int i = 0; i < toDelete.size(); i += DELETE_BATCH_SIZE) {
+            vectorStore.delete(toDelete.subList(i, Math.min(i + DELETE_BATCH_SIZE, toDelete.size())));
+        }
+        // 4、只对新增或修改的块做嵌入
+        List<Document> toAdd = new ArrayList<>();
+        for (Document document : desired.values()) {
+            if (!existingIds.contains(document.getId())) {
+                toAdd.add(document);
+            }
+        }
+        if (!toAdd.isEmpty()) {
+            embeddingPipeline.ingest(toAdd, vectorStore);
+        }
+        IngestionResult result = new IngestionResult(desired.size() - toAdd.size(), toAdd.size(), toDelete.size(),
+                System.currentTimeMillis() - start);
+        log.info("向量库增量同步完成：未变化 {}，新增 {}，删除 {}，耗时 {} ms",
+                result.unchanged(), result.added(), result.deleted(), result.elapsedMillis());
+        return result;
+    }
+
+    /**
+     * 计算文档的内容哈希，返回使用确定性 ID 并带有哈希元数据的新文档
+     */
+    static Document withContentHash(Document document) {
+        String source = Objects.toString(document.getMetadata().get("filename"), "");
+        String hash = SecureUtil.sha256(source + "\n" + Objects.toString(document.getText(), ""));
+        Map<String, Object> metadata = new LinkedHashMap<>(document.getMetadata());
+        metadata.put(CONTENT_HASH_KEY, hash);
+        return Document.builder()
+                .id(UUID.nameUUIDFromBytes(hash.getBytes(StandardCharsets.UTF_8)).toString())
+                .text(document.getText())
+                .metadata(metadata)
+                .build();
+    }
+
+    /**
+     * 同步结果
+     *
+     * @param unchanged     内容未变、跳过的块数
+     * @param added         新增或修改、重新嵌入的块数
+     * @param deleted       删除的块数
+     * @param elapsedMillis 耗时（毫秒）
+     */
+    public record IngestionResult(int unchanged, int added, int deleted, long elapsedMillis) {
+    }
+}
@@ -4,16 +4,29 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
 import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * LoveAppDocumentLoader 类用于加载 Markdown 文档。
  * 它是一个 Spring 组件，使用 @Slf4j 注解提供日志功能。
+ * 文档位置可以是 classpath 或文件系统目录（如 file:/data/docs/*.md），多个文件并行解析，
+ * 解析结果以 Flux 流式输出，下游可以边解析边处理。
+ * 解析失败不会被静默吞掉：loadMarkdowns 和 streamMarkdowns 直接报错，load 返回标记为部分加载的结果。
  */
 @Component
 @Slf4j
@@ -25,48 +38,162 @@ class LoveAppDocumentLoader {
      */
     private final ResourcePatternResolver resourcePatternResolver;
 
+    /**
+     * 文档位置，支持 classpath: 和 file: 前缀的路径模式
+     */
+    private final List<String> locations;
+
+    /**
+     * 同时解析的文件数
+     */
+    private final int parallelism;
+
     /**
      * LoveAppDocumentLoader 的构造函数，通过依赖注入方式注入 ResourcePatternResolver。
      * @param resourcePatternResolver 用于解析资源路径的解析器
+     * @param locations 文档位置，多个位置用英文逗号分隔
+     * @param parallelism 同时解析的文件数
      */
-    LoveAppDocumentLoader(ResourcePatternResolver resourcePatternResolver) {
+    LoveAppDocumentLoader(ResourcePatternResolver resourcePatternResolver,
+                          @Value("${rag.document.locations:classpath:document/*.md}") String[] locations,
+                          @Value("${rag.document.parallelism:4}") int parallelism) {
         this.resourcePatternResolver = resourcePatternResolver;
+        this.locations = Arrays.stream(locations).map(String::trim).filter(location -> !location.isEmpty()).toList();
+        this.parallelism = parallelism;
     }
 
     /**
-     * 加载 classpath:document/ 目录下所有的 Markdown 文档。
-     * @return 返回包含所有加载文档的 List<Document> 列表，如果加载失败则返回空列表
+     * 加载所有位置下的 Markdown 文档。
+     * 任一位置查找失败或文件解析失败时抛出异常，不会返回缺少文件的结果
+     * @return 返回包含所有加载文档的 List<Document> 列表，顺序与文件顺序一致
      */
     public List<Document> loadMarkdowns() {
-        // 创建一个空列表用于存储所有加载的文档
-        List<Document> allDocuments = new ArrayList<>();
-        try {
-            // 获取 classpath:document/ 目录下所有的 .md 文件资源
-            Resource[] resources = resourcePatternResolver.getResources("classpath:document/*.md");
-            // 遍历每个资源文件
-            for (Resource resource : resources) {
-                // 获取文件名
-                String filename = resource.getFilename();
-                // 提取文档倒数第 3 和第 2 个字作为标签
-                String status = filename.substring(filename.length() - 6, filename.length() - 4);
-                // 构建 Markdown 文档读取器配置
-                MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
-                        .withHorizontalRuleCreateDocument(true)  // 启用水平规则创建文档
-                        .withIncludeCodeBlock(false)            // 不包含代码块
-                        .withIncludeBlockquote(false)           // 不包含引用块
-                        .withAdditionalMetadata("filename", filename)  // 添加文件名作为元数据
-                        .withAdditionalMetadata("status", status)      // 添加状态作为元数据
-                        .build();
-                // 创建 Markdown 文档读取器并读取文档内容
-                MarkdownDocumentReader markdownDocumentReader = new MarkdownDocumentReader(resource, config);
-                // 将读取的文档添加到列表中
-                allDocuments.addAll(markdownDocumentReader.get());
+        return streamMarkdowns().collectList().block();
+    }
+
+    /**
+     * 加载所有位置下的 Markdown 文档，查找或解析失败的位置和文件记录日志后跳过，结果标记为部分加载
+     * @return 加载结果，包含文档、完整解析的文件名和失败项
+     */
+    public LoadResult load() {
+        List<String> failures = new ArrayList<>();
+        List<Resource> resources = resolveResources(failures);
+        List<Document> documents = new ArrayList<>();
+        Set<String> completeSources = new LinkedHashSet<>();
+        for (ParsedFile file : parseAll(resources).collectList().block()) {
+            if (file.error() != null) {
+                failures.add(file.filename());
+            } else {
+                documents.addAll(file.documents());
+                completeSources.add(file.filename());
             }
-        } catch (IOException e) {
-            // 记录错误日志
-            log.error("Markdown 文档加载失败", e);
         }
-        // 返回所有加载的文档列表
-        return allDocuments;
+        if (!failures.isEmpty()) {
+            log.warn("Markdown 文档部分加载：{} 个文件成功，失败 {}", completeSources.size(), failures);
+        }
+        return new LoadResult(documents, completeSources, failures);
+    }
+
+    /**
+     * 并行解析所有位置下的 Markdown 文档，按文件顺序流式输出
+     * 任一位置查找失败或文件解析失败时，流以错误结束
+     * @return 文档流
+     */
+    public Flux<Document> streamMarkdowns() {
+        return Flux.defer(() -> {
+            List<String> failures = new ArrayList<>();
+            List<Resource> resources = resolveResources(failures);
+            if (!failures.isEmpty()) {
+                return Flux.error(new IllegalStateException("Failed to resolve markdown locations " + failures));
+            }
+            return parseAll(resources).concatMap(file -> file.error() == null ? Flux.fromIterable(file.documents())
+                    : Flux.error(new IllegalStateException("Failed to parse markdown " + file.filename(), file.error())));
+        });
+    }
+
+    /**
+     * 并行解析文件，按文件顺序输出每个文件的解析结果，解析失败的文件带有异常
+     */
+    private Flux<ParsedFile> parseAll(List<Resource> resources) {
+        long start = System.currentTimeMillis();
+        AtomicInteger fileCount = new AtomicInteger();
+        AtomicInteger documentCount = new AtomicInteger();
+        AtomicLong slowestMillis = new AtomicLong();
+        return Flux.fromIterable(resources)
+                // 保持文件顺序，保证快照指纹稳定；解析本身并行进行
+                .flatMapSequential(resource -> Mono.fromCallable(() -> new ParsedFile(resource.getFilename(), parse(resource, slowestMillis), null))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.error("Markdown 文档解析失败：{}", resource.getFilename(), e);
+                            return Mono.just(new ParsedFile(resource.getFilename(), List.of(), e));
+                        }), parallelism)
+                .doOnNext(file -> {
+                    fileCount.incrementAndGet();
+                    documentCount.addAndGet(file.documents().size());
+                })
+                .doOnComplete(() -> log.info("Markdown 文档加载完成：{} 个文件，{} 个文档，耗时 {} ms，最慢的文件 {} ms",
+                        fileCount.get(), documentCount.get(), System.currentTimeMillis() - start, slowestMillis.get()));
+    }
+
+    private List<Resource> resolveResources(List<String> failures) {
+        // 创建一个空列表用于存储所有文档资源
+        List<Resource> resources = new ArrayList<>();
+        for (String location : locations) {
+            try {
+                // 获取该位置下所有的 .md 文件资源
+                resources.addAll(Arrays.asList(resourcePatternResolver.getResources(location)));
+            } catch (IOException e) {
+                // 记录错误日志，该位置下的文件都视为加载失败
+                log.error("Markdown 文档查找失败：{}", location, e);
+                failures.add(location);
+            }
+        }
+        return resources;
+    }
+
+    private List<Document> parse(Resource resource, AtomicLong slowestMillis) {
+        long start = System.currentTimeMillis();
+        // 获取文件名
+        String filename = resource.getFilename();
+        // 提取文档倒数第 3 和第 2 个字作为标签
+        String status = filename != null && filename.length() >= 6
+                ? filename.substring(filename.length() - 6, filename.length() - 4) : "";
+        // 构建 Markdown 文档读取器配置
+        MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
+                .withHorizontalRuleCreateDocument(true)  // 启用水平规则创建文档
+                .withIncludeCodeBlock(false)            // 不包含代码块
+                .withIncludeBlockquote(false)           // 不包含引用块
+                .withAdditionalMetadata("filename", filename)  // 添加文件名作为元数据
+                .withAdditionalMetadata("status", status)      // 添加状态作为元数据
+                .build();
+        // 创建 Markdown 文档读取器并读取文档内容
+        List<Document> documents = new MarkdownDocumentReader(resource, config).get();
+        long elapsed = System.currentTimeMillis() - start;
+        slowestMillis.accumulateAndGet(elapsed, Math::max);
+        log.debug("Markdown 文档解析完成：{}，{} 个文档，耗时 {} ms", filename, documents.size(), elapsed);
+        return documents;
+    }
+
+    /**
+     * 单个文件的解析结果
+     */
+    private record ParsedFile(String filename, List<Document> documents, Throwable error) {
+    }
+
+    /**
+     * 文档加载结果
+     *
+     * @param documents       成功解析的文档，顺序与文件顺序一致
+     * @param completeSources 完整解析的文件名（包括没有内容的文件）
+     * @param failures        查找失败的位置和解析失败的文件名
+     */
+    public record LoadResult(List<Document> documents, Set<String> completeSources, List<String> failures) {
+
+        /**
+         * 是否只加载了部分文件。部分加载的结果不能用来保存快照，也不能据此删除向量库中已有的内容
+         */
+        public boolean partial() {
+            return !failures.isEmpty();
+        }
     }
 }
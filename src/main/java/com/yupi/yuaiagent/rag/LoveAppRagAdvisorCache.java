@@ -0,0 +1,48 @@
+package com.yupi.yuaiagent.rag;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 恋爱大师知识库按状态过滤的 RAG 顾问缓存
+ * <p>
+ * 每种状态的顾问（检索器 + 查询增强器）只构建一次，对话时按状态取出复用。
+ * 缓存由 Bean 持有、只对应注入的恋爱大师向量存储，条目数有上限，不会让其他向量存储一直被引用。
+ */
+@Component
+public class LoveAppRagAdvisorCache {
+
+    private final VectorStore loveAppVectorStore;
+
+    // 状态 -> 顾问
+    private final LRUCache<String, Advisor> advisors;
+
+    /**
+     * @param loveAppVectorStore 恋爱大师向量存储
+     * @param maxStatuses        缓存的状态数上限
+     */
+    public LoveAppRagAdvisorCache(@Qualifier("loveAppVectorStore") VectorStore loveAppVectorStore,
+                                  @Value("${rag.custom-advisor.max-statuses:16}") int maxStatuses) {
+        this.loveAppVectorStore = loveAppVectorStore;
+        this.advisors = CacheUtil.newLRUCache(maxStatuses);
+    }
+
+    /**
+     * 获取只检索指定状态文档的 RAG 顾问
+     *
+     * @param status 状态，如「单身」
+     * @return 自定义的 RAG 检索增强顾问
+     */
+    public Advisor forStatus(String status) {
+        return advisors.get(status, () -> LoveAppRagCustomAdvisorFactory.createLoveAppRagCustomAdvisor(loveAppVectorStore, status));
+    }
+
+    public int size() {
+        return advisors.size();
+    }
+}
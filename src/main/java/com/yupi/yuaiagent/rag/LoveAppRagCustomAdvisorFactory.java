@@ -9,9 +9,12 @@ import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 
+import java.time.Duration;
+
 /**
  * 创建自定义的 RAG 检索增强顾问的工厂
  * 该工厂类负责创建和配置检索增强生成(RAG)顾问实例
+ * 每次调用都会构建新的检索器：按状态过滤的顾问通过 LoveAppRagAdvisorCache 复用，混合检索顾问是单独的 Bean
  */
 public class LoveAppRagCustomAdvisorFactory {
 
@@ -43,4 +46,25 @@ public class LoveAppRagCustomAdvisorFactory {
                 .queryAugmenter(LoveAppContextualQueryAugmenterFactory.createInstance())
                 .build();
     }
+
+    /**
+     * 创建混合检索的 RAG 检索增强顾问
+     * 关键词检索和向量检索并行执行并按倒数排名融合，向量检索超过 2 秒时只使用关键词检索结果
+     *
+     * @param vectorStore 向量存储，用于存储和检索文档向量
+     * @param bm25Index   与向量存储内容相同的关键词索引
+     * @param status      状态，用于过滤特定状态的文档，为 null 时不过滤
+     * @return 混合检索的 RAG 检索增强顾问
+     */
+    public static Advisor createLoveAppHybridRagAdvisor(VectorStore vectorStore, Bm25Index bm25Index, String status) {
+        Filter.Expression expression = status == null ? null : new FilterExpressionBuilder()
+                .eq("status", status)
+                .build();
+        DocumentRetriever documentRetriever = new HybridDocumentRetriever(
+                vectorStore, bm25Index, expression, 0.5, 3, Duration.ofSeconds(2));
+        return RetrievalAugmentationAdvisor.builder()
+                .documentRetriever(documentRetriever)
+                .queryAugmenter(LoveAppContextualQueryAugmenterFactory.createInstance())
+                .build();
+    }
 }
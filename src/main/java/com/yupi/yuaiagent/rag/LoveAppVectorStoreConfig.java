@@ -1,13 +1,25 @@
 package com.yupi.yuaiagent.rag;
 
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yuaiagent.constant.FileConstant;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.SimpleVectorStoreContent;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -15,6 +27,7 @@ import java.util.List;
  * 用于配置和创建向量存储相关的Bean
  */
 @Configuration
+@Slf4j
 public class LoveAppVectorStoreConfig {
 
     @Resource
@@ -23,22 +36,147 @@ public class LoveAppVectorStoreConfig {
     private  MyKeywordEnricher myKeywordEnricher;  // 注入关键词增强器，用于为文档补充元信息
     @Resource
     private MyTokenTextSplitter myTokenTextSplitter;  // 注入切词器，用于切分文档
+    @Resource
+    private EmbeddingPipeline embeddingPipeline;  // 注入嵌入流水线，用于分批并行嵌入文档
+    @Resource
+    private VectorStoreWarmup vectorStoreWarmup;  // 注入预热调度，在后台构建向量存储
+
+    @Value("${rag.snapshot.enabled:true}")
+    private boolean snapshotEnabled;  // 是否启用向量存储快照
+
+    @Value("${rag.snapshot.path:}")
+    private String snapshotPath;  // 快照文件路径，默认保存在文件保存目录下
+
+    @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v2}")
+    private String embeddingModelName;  // 嵌入模型名称，参与快照指纹计算
+
+    @Value("${spring.ai.dashscope.chat.options.model:qwen-plus}")
+    private String chatModelName;  // 关键词补充使用的对话模型名称，参与快照指纹计算
+
+    @Value("${rag.document.split-enabled:false}")
+    private boolean splitEnabled;  // 是否先按中文句子切分文档再入库
+
+    @Value("${rag.document.pipeline-batch-size:100}")
+    private int pipelineBatchSize;  // 关键词补充和嵌入流水线每批的文档数
+
+    @Value("${rag.document.pipeline-concurrency:2}")
+    private int pipelineConcurrency;  // 流水线中同时处理的批次数
+
+    @Value("${rag.index.type:simple}")
+    private String indexType;  // 检索索引类型：simple（SimpleVectorStore）或 off-heap（堆外向量索引）
+
+    @Value("${rag.index.quantization:NONE}")
+    private OffHeapVectorIndex.Quantization indexQuantization;  // 堆外索引的向量精度
+
+    @Value("${rag.index.mode:FLAT}")
+    private OffHeapVectorIndex.IndexMode indexMode;  // 堆外索引的检索模式
+
+    @Value("${rag.index.nprobe:8}")
+    private int indexNprobe;  // IVF 模式下每次查询扫描的倒排列表数
+
+    @Value("${rag.hybrid.status:}")
+    private String hybridStatus;  // 混合检索只检索该状态的文档，为空时不过滤
+
+    /**
+     * 创建关键词索引Bean，内容在创建向量存储时一并写入
+     * @return 空的 BM25 关键词索引
+     */
+    @Bean
+    Bm25Index loveAppBm25Index() {
+        return new Bm25Index();
+    }
+
+    /**
+     * 创建混合检索的 RAG 顾问Bean，开启 rag.hybrid.enabled 后 LoveApp 的 RAG 对话会使用它
+     * @param loveAppVectorStore 恋爱大师向量存储
+     * @param loveAppBm25Index 与向量存储内容相同的关键词索引
+     * @return 关键词 + 向量混合检索的顾问
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "rag.hybrid", name = "enabled", havingValue = "true")
+    Advisor loveAppHybridRagAdvisor(VectorStore loveAppVectorStore, Bm25Index loveAppBm25Index) {
+        return LoveAppRagCustomAdvisorFactory.createLoveAppHybridRagAdvisor(
+                loveAppVectorStore, loveAppBm25Index, StrUtil.emptyToNull(hybridStatus));
+    }
 
     /**
      * 创建向量存储Bean
-     * @param dashscopeEmbeddingModel 阿里云Dashscope的嵌入模型，用于文本向量化
+     * 源文档和模型配置未变化时直接加载二进制快照，否则重新补充元信息、嵌入并保存快照；
+     * 构建过程在后台执行，Bean 立即返回，就绪前的检索返回空结果
+     * @param cachingEmbeddingModel 带缓存的阿里云Dashscope嵌入模型，用于文本向量化
+     * @param loveAppBm25Index 关键词索引，与向量存储使用相同的内容
      * @return 配置好的向量存储实例
      */
     @Bean
-    VectorStore loveAppVectorStore(EmbeddingModel dashscopeEmbeddingModel) {
-        SimpleVectorStore simpleVectorStore = SimpleVectorStore.builder(dashscopeEmbeddingModel).build();
-        // 加载文档
-        List<Document> documentList = loveAppDocumentLoader.loadMarkdowns();
+    VectorStore loveAppVectorStore(EmbeddingModel cachingEmbeddingModel, Bm25Index loveAppBm25Index) {
+        return vectorStoreWarmup.warm("loveAppVectorStore",
+                () -> buildLoveAppVectorStore(cachingEmbeddingModel, loveAppBm25Index));
+    }
+
+    private VectorStore buildLoveAppVectorStore(EmbeddingModel cachingEmbeddingModel, Bm25Index loveAppBm25Index) {
+        SnapshotSimpleVectorStore simpleVectorStore = buildSimpleVectorStore(cachingEmbeddingModel);
+        // 构建关键词索引，供混合检索使用
+        loveAppBm25Index.addAll(simpleVectorStore.getContents().stream()
+                .map(content -> new Document(content.getId(), content.getText(), content.getMetadata()))
+                .toList());
+        if (!"off-heap".equals(indexType)) {
+            return simpleVectorStore;
+        }
+        // 把已嵌入的内容迁移到堆外向量索引，无需重新嵌入
+        OffHeapVectorIndex index = new OffHeapVectorIndex(cachingEmbeddingModel, indexQuantization, indexMode, indexNprobe);
+        for (SimpleVectorStoreContent content : simpleVectorStore.getContents()) {
+            index.addEmbedded(content.getId(), content.getText(), content.getMetadata(), content.getEmbedding());
+        }
+        log.info("已创建堆外向量索引：{} 条内容，精度 {}，模式 {}", index.size(), indexQuantization, indexMode);
+        return index;
+    }
+
+    private SnapshotSimpleVectorStore buildSimpleVectorStore(EmbeddingModel embeddingModel) {
+        SnapshotSimpleVectorStore simpleVectorStore = new SnapshotSimpleVectorStore(embeddingModel);
+        // 加载文档，解析失败的文件跳过
+        LoveAppDocumentLoader.LoadResult loadResult = loveAppDocumentLoader.load();
+        List<Document> documentList = loadResult.documents();
+        // 计算源文档指纹，快照有效时直接加载
+        String fingerprint = SnapshotSimpleVectorStore.fingerprint(documentList,
+                "embedding=" + embeddingModelName + ";chat=" + chatModelName + ";split=" + splitEnabled);
+        Path path = StrUtil.isNotBlank(snapshotPath) ? Paths.get(snapshotPath)
+                : Paths.get(FileConstant.FILE_SAVE_DIR, "vector-store", "love-app.snapshot");
+        if (snapshotEnabled && simpleVectorStore.loadSnapshot(path, fingerprint)) {
+            return simpleVectorStore;
+        }
         // 自主切分文档
-        // List<Document> splitDocuments = myTokenTextSplitter.splitCustomized(documentList);
-        // 自动补充关键词元信息
-        List<Document> enrichedDocuments = myKeywordEnricher.enrichDocuments(documentList);
-        simpleVectorStore.add(enrichedDocuments);
+        if (splitEnabled) {
+            documentList = myTokenTextSplitter.splitCustomized(documentList);
+        }
+        // 按批流水线处理：一批补充完关键词元信息就开始嵌入，同时补充下一批的关键词
+        myKeywordEnricher.beginIngest();
+        try {
+            Flux.fromIterable(documentList)
+                    .buffer(pipelineBatchSize)
+                    .flatMap(batch -> Mono.fromRunnable(() -> embeddingPipeline.ingest(
+                                    myKeywordEnricher.enrichDocuments(batch), simpleVectorStore))
+                            .subscribeOn(Schedulers.boundedElastic()), pipelineConcurrency)
+                    .blockLast();
+        } catch (RuntimeException e) {
+            myKeywordEnricher.abortIngest();
+            throw e;
+        }
+        // 文档不完整时不清理关键词缓存，缺失文件的关键词下次还能用上
+        if (loadResult.partial()) {
+            myKeywordEnricher.abortIngest();
+        } else {
+            myKeywordEnricher.completeIngest();
+        }
+        if (snapshotEnabled && loadResult.partial()) {
+            // 缺少文件的向量存储不保存快照，否则下次启动会把不完整的内容当成有效快照
+            log.warn("知识库文档未完整加载，跳过保存向量存储快照：{}", loadResult.failures());
+        } else if (snapshotEnabled) {
+            try {
+                simpleVectorStore.saveSnapshot(path, fingerprint);
+            } catch (IOException e) {
+                log.warn("向量存储快照保存失败：{}", path, e);
+            }
+        }
         return simpleVectorStore;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.yupi.yuaiagent.rag;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 元数据位图索引
+ * <p>
+ * 为取值较少的字符串元数据字段（如 status：单身 / 恋爱 / 已婚）按取值维护槽位位图。
+ * 等值、IN、不等、NOT IN 以及它们的与或非组合可以直接用位图运算得到匹配的槽位，
+ * 过滤检索时只对匹配的子集打分，不再逐个文档求值 SpEL 过滤表达式。
+ * 取值过多或存在非字符串取值的字段不建索引，涉及这类字段的过滤条件返回 null，由调用方退回逐个求值。
+ * 非线程安全，由调用方加锁。
+ */
+class MetadataBitmapIndex {
+
+    // 单个字段最多索引的取值数，超过后该字段不再建索引（如文件名、关键词）
+    static final int MAX_VALUES_PER_FIELD = 64;
+
+    // 字段 -> 取值 -> 槽位位图
+    private final Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+
+    // 不建索引的字段
+    private final Set<String> unindexedFields = new HashSet<>();
+
+    void add(int slot, Map<String, Object> metadata) {
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            String field = entry.getKey();
+            if (unindexedFields.contains(field)) {
+                continue;
+            }
+            Map<String, BitSet> values = bitmaps.computeIfAbsent(field, f -> new HashMap<>());
+            if (!(entry.getValue() instanceof String value)
+                    || (!values.containsKey(value) && values.size() >= MAX_VALUES_PER_FIELD)) {
+                bitmaps.remove(field);
+                unindexedFields.add(field);
+                continue;
+            }
+            values.computeIfAbsent(value, v -> new BitSet()).set(slot);
+        }
+    }
+
+    void clear() {
+        bitmaps.clear();
+        unindexedFields.clear();
+    }
+
+    /**
+     * 计算过滤条件匹配的槽位
+     *
+     * @param expression 过滤条件
+     * @param size       槽位总数，用于求补集
+     * @return 匹配的槽位，条件中有未建索引的字段或不支持的运算时返回 null
+     */
+    BitSet resolve(Filter.Expression expression, int size) {
+        return resolveOperand(expression, size);
+    }
+
+    private BitSet resolveOperand(Filter.Operand operand, int size) {
+        if (operand instanceof Filter.Group group) {
+            return resolveOperand(group.content(), size);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            return null;
+        }
+        return switch (expression.type()) {
+            case AND, OR -> {
+                BitSet left = resolveOperand(expression.left(), size);
+                BitSet right = left == null ? null : resolveOperand(expression.right(), size);
+                if (right == null) {
+                    yield null;
+                }
+                if (expression.type() == Filter.ExpressionType.AND) {
+                    left.and(right);
+                } else {
+                    left.or(right);
+                }
+                yield left;
+            }
+            case NOT -> complement(resolveOperand(expression.left(), size), size);
+            case EQ, IN -> match(expression);
+            // 缺少该字段的文档也满足不等条件，与 SpEL 求值结果一致
+            case NE, NIN -> complement(match(expression), size);
+            default -> null;
+        };
+    }
+
+    /**
+     * 等值或 IN 条件匹配的槽位
+     */
+    private BitSet match(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key) || !(expression.right() instanceof Filter.Value value)) {
+            return null;
+        }
+        String field = unquote(key.key());
+        if (unindexedFields.contains(field)) {
+            return null;
+        }
+        Map<String, BitSet> values = bitmaps.getOrDefault(field, Map.of());
+        List<?> expected = value.value() instanceof List<?> list ? list : List.of(value.value());
+        BitSet result = new BitSet();
+        for (Object item : expected) {
+            if (!(item instanceof String text)) {
+                return null;
+            }
+            BitSet bitmap = values.get(text);
+            if (bitmap != null) {
+                result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet complement(BitSet bitSet, int size) {
+        if (bitSet != null) {
+            bitSet.flip(0, size);
+        }
+        return bitSet;
+    }
+
+    /**
+     * 文本形式的过滤条件中，字段名可能带有引号
+     */
+    private static String unquote(String key) {
+        if (key.length() >= 2 && (key.startsWith("'") && key.endsWith("'") || key.startsWith("\"") && key.endsWith("\""))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+}
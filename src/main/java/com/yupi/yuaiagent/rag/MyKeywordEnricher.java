@@ -1,24 +1,257 @@
 package com.yupi.yuaiagent.rag;
 
-import jakarta.annotation.Resource;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yuaiagent.constant.FileConstant;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.transformer.KeywordMetadataEnricher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 基于 AI 的文档元信息增强器（为文档补充元信息）
+ * <p>
+ * 与 Spring AI 的 KeywordMetadataEnricher 一样把关键词写入 excerpt_keywords 元数据，但是：
+ * 关键词按内容哈希缓存到磁盘，内容未变化的文档不再调用大模型；需要调用时以有限的并发度并行执行；
+ * 较短的文档可以合并到同一个提示词中，一次调用为多段文本生成关键词。
+ * <p>
+ * 缓存键包含对话模型名称和提示词版本，换模型或改提示词后旧关键词自然失效；一次完整入库
+ * （{@link #beginIngest()} 到 {@link #completeIngest()}）结束时，未被用到的缓存条目会被清除。
  */
 @Component
+@Slf4j
 public class MyKeywordEnricher {
 
-    @Resource
-    private ChatModel dashscopeChatModel;
+    // 与 KeywordMetadataEnricher 相同的元数据键
+    static final String EXCERPT_KEYWORDS_METADATA_KEY = "excerpt_keywords";
+
+    // 合并提示词的结果格式，如 "[1] 关键词1, 关键词2"
+    private static final Pattern BATCH_LINE_PATTERN = Pattern.compile("^\\s*\\[(\\d+)]\\s*(.+)$", Pattern.MULTILINE);
+
+    // 提示词版本，修改单文档或合并提示词时递增，使旧的缓存条目失效
+    static final String PROMPT_VERSION = "1";
+
+    private final ChatModel dashscopeChatModel;
+
+    // 对话模型名称，参与缓存键计算
+    private final String chatModelName;
+
+    // 每个文档的关键词数
+    private final int keywordCount;
+
+    // 同时进行的大模型调用数
+    private final int parallelism;
+
+    // 短文档合并时每个提示词最多包含的文档数，小于等于 1 表示不合并
+    private final int batchSize;
+
+    // 不超过该字符数的文档视为短文档
+    private final int shortChunkChars;
+
+    // 关键词缓存文件，为 null 时不缓存
+    private final File cacheFile;
+
+    // 内容哈希 -> 关键词
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    // 本次入库用到的缓存键，为 null 表示不在完整入库过程中
+    private volatile Set<String> usedKeys;
+
+    public MyKeywordEnricher(ChatModel dashscopeChatModel,
+                             @Value("${spring.ai.dashscope.chat.options.model:qwen-plus}") String chatModelName,
+                             @Value("${rag.keyword.count:5}") int keywordCount,
+                             @Value("${rag.keyword.parallelism:4}") int parallelism,
+                             @Value("${rag.keyword.batch-size:5}") int batchSize,
+                             @Value("${rag.keyword.short-chunk-chars:300}") int shortChunkChars,
+                             @Value("${rag.keyword.cache-enabled:true}") boolean cacheEnabled) {
+        this.dashscopeChatModel = dashscopeChatModel;
+        this.chatModelName = chatModelName;
+        this.keywordCount = keywordCount;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.shortChunkChars = shortChunkChars;
+        this.cacheFile = cacheEnabled ? new File(FileConstant.FILE_SAVE_DIR + "/keyword-cache/keywords.json") : null;
+        loadCache();
+    }
 
     public List<Document> enrichDocuments(List<Document> documents) {
-        KeywordMetadataEnricher keywordMetadataEnricher = new KeywordMetadataEnricher(dashscopeChatModel, 5);
-        return  keywordMetadataEnricher.apply(documents);
+        long start = System.currentTimeMillis();
+        // 1、命中缓存的文档直接补充关键词，其余按长短分组
+        List<Document> shortChunks = new ArrayList<>();
+        List<List<Document>> tasks = new ArrayList<>();
+        Set<String> used = usedKeys;
+        for (Document document : documents) {
+            String key = hash(document);
+            if (used != null) {
+                used.add(key);
+            }
+            String keywords = cache.get(key);
+            if (keywords != null) {
+                document.getMetadata().put(EXCERPT_KEYWORDS_METADATA_KEY, keywords);
+            } else if (batchSize > 1 && document.getText().length() <= shortChunkChars) {
+                shortChunks.add(document);
+            } else {
+                tasks.add(List.of(document));
+            }
+        }
+        for (int i = 0; i < shortChunks.size(); i += batchSize) {
+            tasks.add(shortChunks.subList(i, Math.min(i + batchSize, shortChunks.size())));
+        }
+        // 2、并行调用大模型
+        Semaphore permits = new Semaphore(parallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+            for (List<Document> task : tasks) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        if (task.size() == 1) {
+                            enrichOne(task.get(0));
+                        } else {
+                            enrichBatch(task);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            // 3、保存缓存（部分失败时也保留已成功的结果）
+            if (!tasks.isEmpty()) {
+                saveCache();
+            }
+        }
+        int cached = documents.size() - (int) tasks.stream().mapToLong(List::size).sum();
+        log.info("关键词补充完成：{} 个文档，缓存命中 {}，大模型调用 {} 次，耗时 {} ms",
+                documents.size(), cached, tasks.size(), System.currentTimeMillis() - start);
+        return documents;
+    }
+
+    /**
+     * 开始一次完整入库，记录之后所有批次用到的缓存键
+     */
+    public void beginIngest() {
+        usedKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * 完整入库成功结束，清除本次没有用到的缓存条目（文档已删除或内容、模型、提示词已变化）
+     */
+    public void completeIngest() {
+        Set<String> used = usedKeys;
+        usedKeys = null;
+        if (used == null) {
+            return;
+        }
+        int before = cache.size();
+        cache.keySet().retainAll(used);
+        int pruned = before - cache.size();
+        if (pruned > 0) {
+            log.info("已清除 {} 条未使用的关键词缓存", pruned);
+            saveCache();
+        }
+    }
+
+    /**
+     * 入库失败或不完整时放弃本次记录，不清除缓存
+     */
+    public void abortIngest() {
+        usedKeys = null;
+    }
+
+    private void enrichOne(Document document) {
+        String prompt = KeywordMetadataEnricher.KEYWORDS_TEMPLATE
+                .formatted(keywordCount)
+                .replace("{" + KeywordMetadataEnricher.CONTEXT_STR_PLACEHOLDER + "}", document.getText());
+        String keywords = dashscopeChatModel.call(prompt).trim();
+        document.getMetadata().put(EXCERPT_KEYWORDS_METADATA_KEY, keywords);
+        cache.put(hash(document), keywords);
+    }
+
+    /**
+     * 一次调用为多个短文档生成关键词，结果缺失的文档退回逐个调用
+     */
+    private void enrichBatch(List<Document> documents) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("下面有 ").append(documents.size()).append(" 段文本，请分别为每段文本给出 ")
+                .append(keywordCount).append(" 个不重复的关键词，关键词之间用英文逗号分隔。\n")
+                .append("严格按照「[序号] 关键词」的格式输出，每段文本一行，不要输出其他内容。\n\n");
+        for (int i = 0; i < documents.size(); i++) {
+            prompt.append("[").append(i + 1).append("] ").append(documents.get(i).getText()).append("\n\n");
+        }
+        Map<Integer, String> keywordsByIndex = new HashMap<>();
+        try {
+            Matcher matcher = BATCH_LINE_PATTERN.matcher(dashscopeChatModel.call(prompt.toString()));
+            while (matcher.find()) {
+                keywordsByIndex.put(Integer.parseInt(matcher.group(1)) - 1, matcher.group(2).trim());
+            }
+        } catch (Exception e) {
+            log.warn("合并的关键词补充调用失败，改为逐个调用", e);
+        }
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            String keywords = keywordsByIndex.get(i);
+            if (keywords == null) {
+                enrichOne(document);
+            } else {
+                document.getMetadata().put(EXCERPT_KEYWORDS_METADATA_KEY, keywords);
+                cache.put(hash(document), keywords);
+            }
+        }
+    }
+
+    /**
+     * 缓存键：对话模型 + 提示词版本 + 关键词数 + 正文的哈希
+     */
+    private String hash(Document document) {
+        return SecureUtil.sha256(chatModelName + "\n" + PROMPT_VERSION + "\n" + keywordCount + "\n" + document.getText());
+    }
+
+    private void loadCache() {
+        if (cacheFile == null || !cacheFile.exists()) {
+            return;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(FileUtil.readString(cacheFile, StandardCharsets.UTF_8));
+            json.forEach((key, value) -> cache.put(key, String.valueOf(value)));
+            log.info("已加载关键词缓存：{} 条", cache.size());
+        } catch (Exception e) {
+            log.warn("关键词缓存读取失败：{}", cacheFile, e);
+        }
+    }
+
+    // 流水线中可能有多批文档同时完成，保存缓存需要串行执行
+    private synchronized void saveCache() {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            // 先写临时文件再替换，避免中途失败破坏缓存
+            File tmp = new File(cacheFile.getPath() + ".tmp");
+            FileUtil.writeString(JSONUtil.toJsonStr(cache), tmp, StandardCharsets.UTF_8);
+            FileUtil.move(tmp, cacheFile, true);
+        } catch (Exception e) {
+            log.warn("关键词缓存保存失败：{}", cacheFile, e);
+        }
     }
 }
@@ -11,13 +11,16 @@ import java.util.List;
  */
 @Component
 class MyTokenTextSplitter {
+
+    // 面向中文的切分器：每块约 200 Token，相邻块重叠约 40 Token
+    private final ChineseTextSplitter chineseTextSplitter = new ChineseTextSplitter(200, 40);
+
     public List<Document> splitDocuments(List<Document> documents) {
         TokenTextSplitter splitter = new TokenTextSplitter();
         return splitter.apply(documents);
     }
 
     public List<Document> splitCustomized(List<Document> documents) {
-        TokenTextSplitter splitter = new TokenTextSplitter(200, 100, 10, 5000, true);
-        return splitter.apply(documents);
+        return chineseTextSplitter.apply(documents);
     }
 }
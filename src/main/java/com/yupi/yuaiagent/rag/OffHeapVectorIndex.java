@@ -0,0 +1,665 @@
+package com.yupi.yuaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 堆外内存的向量索引
+ * <p>
+ * SimpleVectorStore 为每个文档保存一个独立的 float[]，每次查询都要线性扫描全部文档。这里把所有向量
+ * 归一化后连续存放在堆外的直接内存中（可选 int8 量化，内存占用降为 1/4），相似度计算退化为点积；
+ * ByteBuffer 只能以 int 寻址，存储按固定槽位数拆成多个分段，容量不受单个缓冲区 2GB 的限制，
+ * 点积使用多累加器展开的循环，便于 JIT 生成 SIMD 指令。支持两种检索模式：
+ * FLAT 精确扫描全部向量；IVF 先用 k-means 把向量划分到若干倒排列表，查询时只扫描最近的几个列表。
+ * 实现了 Spring AI 的 VectorStore 接口，可以直接替换 SimpleVectorStore 使用，支持元数据过滤表达式；
+ * 对取值较少的元数据字段维护位图索引，按 status 等字段过滤时只对匹配的子集打分。
+ */
+@Slf4j
+public class OffHeapVectorIndex implements VectorStore {
+
+    /**
+     * 向量存储精度
+     */
+    public enum Quantization {
+        // 32 位浮点
+        NONE,
+        // 每个向量按最大绝对值对称量化为 int8
+        INT8
+    }
+
+    /**
+     * 检索模式
+     */
+    public enum IndexMode {
+        // 精确扫描
+        FLAT,
+        // 倒排文件（k-means 聚类）近似检索
+        IVF
+    }
+
+    // 初始容量（向量数）
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // 默认单个堆外分段的字节上限
+    private static final int DEFAULT_SEGMENT_BYTES = 1 << 28;
+
+    // 槽位编号是 int，向量总数的上限
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    // 向量数少于该值时 IVF 模式也使用精确扫描
+    private static final int IVF_MIN_VECTORS = 2000;
+
+    // k-means 迭代次数
+    private static final int KMEANS_ITERATIONS = 10;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final Quantization quantization;
+
+    private final IndexMode mode;
+
+    // IVF 模式下每次查询扫描的倒排列表数
+    private final int nprobe;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ExpressionParser expressionParser = new SpelExpressionParser();
+
+    private final SimpleVectorStoreFilterExpressionConverter filterExpressionConverter = new SimpleVectorStoreFilterExpressionConverter();
+
+    // 向量维度，添加第一个向量时确定
+    private int dimensions = -1;
+
+    // 已分配的槽位数
+    private int capacity;
+
+    // 已使用的槽位数（包括已删除的）
+    private int size;
+
+    // 单个分段的字节上限
+    private final int segmentBytes;
+
+    // 每个分段的槽位数，确定维度后计算；槽位 slot 位于第 slot / segmentSlots 个分段
+    private int segmentSlots;
+
+    // 32 位浮点向量分段（Quantization.NONE）
+    private final List<FloatBuffer> vectorSegments = new ArrayList<>();
+
+    // int8 量化向量分段（Quantization.INT8）及每个向量的缩放系数
+    private final List<ByteBuffer> quantizedSegments = new ArrayList<>();
+
+    private float[] scales;
+
+    // 槽位对应的文档信息
+    private final List<String> ids = new ArrayList<>();
+
+    private final List<String> texts = new ArrayList<>();
+
+    private final List<Map<String, Object>> metadataList = new ArrayList<>();
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+
+    // 已删除的槽位
+    private final BitSet deleted = new BitSet();
+
+    // 元数据位图索引，用于过滤检索
+    private final MetadataBitmapIndex metadataBitmaps = new MetadataBitmapIndex();
+
+    // IVF 聚类中心和倒排列表
+    private float[][] centroids;
+
+    private int[][] invertedLists;
+
+    private int[] invertedListSizes;
+
+    // 自上次聚类以来是否新增过大量向量，需要重新聚类
+    private boolean ivfDirty = true;
+
+    // 上次聚类时的向量数
+    private int ivfBuiltSize;
+
+    public OffHeapVectorIndex(EmbeddingModel embeddingModel) {
+        this(embeddingModel, Quantization.NONE, IndexMode.FLAT, 8);
+    }
+
+    /**
+     * @param embeddingModel 嵌入模型
+     * @param quantization   向量存储精度
+     * @param mode           检索模式
+     * @param nprobe         IVF 模式下每次查询扫描的倒排列表数
+     */
+    public OffHeapVectorIndex(EmbeddingModel embeddingModel, Quantization quantization, IndexMode mode, int nprobe) {
+        this(embeddingModel, quantization, mode, nprobe, DEFAULT_SEGMENT_BYTES);
+    }
+
+    OffHeapVectorIndex(EmbeddingModel embeddingModel, Quantization quantization, IndexMode mode, int nprobe,
+                       int segmentBytes) {
+        this.segmentBytes = segmentBytes;
+        this.embeddingModel = embeddingModel;
+        this.quantization = quantization;
+        this.mode = mode;
+        this.nprobe = Math.max(1, nprobe);
+    }
+
+    @Override
+    public String getName() {
+        return "OffHeapVectorIndex";
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        // 批量嵌入，在锁外执行
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            addEmbedded(document.getId(), document.getText(), document.getMetadata(), embeddings.get(i));
+        }
+    }
+
+    /**
+     * 添加已经嵌入的内容（如从快照加载），ID 已存在时覆盖
+     */
+    public void addEmbedded(String id, String text, Map<String, Object> metadata, float[] embedding) {
+        lock.writeLock().lock();
+        try {
+            if (dimensions < 0) {
+                dimensions = embedding.length;
+                int bytesPerVector = dimensions * (quantization == Quantization.INT8 ? 1 : Float.BYTES);
+                segmentSlots = Math.max(1, segmentBytes / bytesPerVector);
+                allocate(INITIAL_CAPACITY);
+            } else if (embedding.length != dimensions) {
+                throw new IllegalArgumentException("Embedding dimensions mismatch: " + embedding.length + " != " + dimensions);
+            }
+            Integer existing = slotById.remove(id);
+            if (existing != null) {
+                deleted.set(existing);
+            }
+            if (size == capacity) {
+                if (capacity >= MAX_CAPACITY) {
+                    throw new IllegalStateException("Vector index is full (" + MAX_CAPACITY + " vectors)");
+                }
+                allocate((int) Math.min((long) capacity * 2, MAX_CAPACITY));
+            }
+            int slot = size++;
+            writeVector(slot, normalize(embedding));
+            ids.add(id);
+            texts.add(text);
+            metadataList.add(new HashMap<>(metadata));
+            metadataBitmaps.add(slot, metadata);
+            slotById.put(id, slot);
+            if (centroids != null) {
+                // 已聚类时把新向量追加到最近的倒排列表，数量明显增长后再重新聚类
+                float[] vector = new float[dimensions];
+                readVector(slot, vector);
+                appendToList(nearestCentroid(vector), slot);
+                ivfDirty = size > ivfBuiltSize * 2;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer slot = slotById.remove(id);
+                if (slot != null) {
+                    deleted.set(slot);
+                }
+            }
+            // 已删除的槽位超过一半时压缩
+            if (deleted.cardinality() > size / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> toDelete = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntPredicate predicate = filterPredicate(filterExpression);
+            for (int slot = 0; slot < size; slot++) {
+                if (!deleted.get(slot) && predicate.test(slot)) {
+                    toDelete.add(ids.get(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(toDelete);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        if (mode == IndexMode.IVF) {
+            ensureIvfBuilt();
+        }
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return List.of();
+            }
+            if (query.length != dimensions) {
+                throw new IllegalArgumentException("Query dimensions mismatch: " + query.length + " != " + dimensions);
+            }
+            // 过滤条件能由位图索引求出时只扫描匹配的槽位，否则逐个求值过滤表达式
+            BitSet candidates = request.hasFilterExpression()
+                    ? metadataBitmaps.resolve(request.getFilterExpression(), size) : null;
+            IntPredicate predicate = candidates != null || !request.hasFilterExpression() ? slot -> true
+                    : filterPredicate(request.getFilterExpression());
+            // 小顶堆保存当前得分最高的 topK 个槽位
+            PriorityQueue<ScoredSlot> heap = new PriorityQueue<>(Comparator.comparingDouble(ScoredSlot::score));
+            float[] scratch = new float[dimensions];
+            byte[] scratchBytes = quantization == Quantization.INT8 ? new byte[dimensions] : null;
+            double threshold = request.getSimilarityThreshold();
+            int topK = request.getTopK();
+            if (candidates != null && (mode == IndexMode.FLAT || centroids == null
+                    || candidates.cardinality() < IVF_MIN_VECTORS)) {
+                // 匹配的子集较小时 IVF 模式也精确扫描，避免过滤后近似检索漏掉结果
+                for (int slot = candidates.nextSetBit(0); slot >= 0 && slot < size; slot = candidates.nextSetBit(slot + 1)) {
+                    scoreSlot(slot, query, scratch, scratchBytes, predicate, threshold, topK, heap);
+                }
+            } else if (mode == IndexMode.IVF && centroids != null) {
+                IntPredicate listPredicate = candidates != null ? candidates::get : predicate;
+                for (int list : nearestCentroids(query, nprobe)) {
+                    for (int i = 0; i < invertedListSizes[list]; i++) {
+                        scoreSlot(invertedLists[list][i], query, scratch, scratchBytes, listPredicate, threshold, topK, heap);
+                    }
+                }
+            } else {
+                for (int slot = 0; slot < size; slot++) {
+                    scoreSlot(slot, query, scratch, scratchBytes, predicate, threshold, topK, heap);
+                }
+            }
+            List<Document> results = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                ScoredSlot entry = heap.poll();
+                results.add(toDocument(entry.slot(), entry.score()));
+            }
+            // 小顶堆弹出的顺序是升序，反转为按得分降序
+            return results.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前存储的有效向量数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void scoreSlot(int slot, float[] query, float[] scratch, byte[] scratchBytes, IntPredicate predicate,
+                           double threshold, int topK, PriorityQueue<ScoredSlot> heap) {
+        if (deleted.get(slot)) {
+            return;
+        }
+        float score = score(slot, query, scratch, scratchBytes);
+        if (score < threshold || (heap.size() >= topK && score <= heap.peek().score())) {
+            return;
+        }
+        // 先比较得分再做元数据过滤，过滤表达式的求值开销远大于点积
+        if (!predicate.test(slot)) {
+            return;
+        }
+        heap.offer(new ScoredSlot(score, slot));
+        if (heap.size() > topK) {
+            heap.poll();
+        }
+    }
+
+    private float score(int slot, float[] query, float[] scratch, byte[] scratchBytes) {
+        if (quantization == Quantization.INT8) {
+            quantizedSegments.get(slot / segmentSlots).get(offset(slot), scratchBytes, 0, dimensions);
+            return scales[slot] * dot(query, scratchBytes, dimensions);
+        }
+        vectorSegments.get(slot / segmentSlots).get(offset(slot), scratch, 0, dimensions);
+        return dot(query, scratch, dimensions);
+    }
+
+    /**
+     * 点积：4 个独立累加器展开循环，消除累加的数据依赖，便于 JIT 向量化
+     */
+    static float dot(float[] a, float[] b, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int upper = length & ~3;
+        for (; i < upper; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 浮点向量与 int8 量化向量的点积（结果需要再乘以缩放系数）
+     */
+    static float dot(float[] a, byte[] b, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int upper = length & ~3;
+        for (; i < upper; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static float[] normalize(float[] embedding) {
+        float norm = (float) Math.sqrt(dot(embedding, embedding, embedding.length));
+        float[] normalized = new float[embedding.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < embedding.length; i++) {
+            normalized[i] = embedding[i] / norm;
+        }
+        return normalized;
+    }
+
+    /**
+     * 槽位在所在分段中的偏移（分段不超过 segmentBytes，偏移不会溢出 int）
+     */
+    private int offset(int slot) {
+        return (slot % segmentSlots) * dimensions;
+    }
+
+    /**
+     * 分配（或扩容）堆外存储：已写满的分段保持不变，只扩容最后一个未满的分段（拷贝其中的向量）并追加新分段
+     */
+    private void allocate(int newCapacity) {
+        int segmentCount = (int) (((long) newCapacity + segmentSlots - 1) / segmentSlots);
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int slots = (int) Math.min(segmentSlots, (long) newCapacity - (long) segment * segmentSlots);
+            // 向量数和字节数都用 long 计算，单个分段的字节数不超过 segmentBytes
+            long elements = (long) slots * dimensions;
+            if (quantization == Quantization.INT8) {
+                ByteBuffer old = segment < quantizedSegments.size() ? quantizedSegments.get(segment) : null;
+                if (old != null && old.capacity() >= elements) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(elements));
+                if (old != null) {
+                    buffer.put(0, old, 0, old.capacity());
+                    quantizedSegments.set(segment, buffer);
+                } else {
+                    quantizedSegments.add(buffer);
+                }
+            } else {
+                FloatBuffer old = segment < vectorSegments.size() ? vectorSegments.get(segment) : null;
+                if (old != null && old.capacity() >= elements) {
+                    continue;
+                }
+                FloatBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(elements * Float.BYTES))
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+                if (old != null) {
+                    buffer.put(0, old, 0, old.capacity());
+                    vectorSegments.set(segment, buffer);
+                } else {
+                    vectorSegments.add(buffer);
+                }
+            }
+        }
+        if (quantization == Quantization.INT8) {
+            scales = scales == null ? new float[newCapacity] : Arrays.copyOf(scales, newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+    private void writeVector(int slot, float[] vector) {
+        if (quantization == Quantization.INT8) {
+            float maxAbs = 0;
+            for (float value : vector) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+            float scale = maxAbs == 0 ? 1 : maxAbs / 127f;
+            byte[] bytes = new byte[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                bytes[i] = (byte) Math.round(vector[i] / scale);
+            }
+            quantizedSegments.get(slot / segmentSlots).put(offset(slot), bytes);
+            scales[slot] = scale;
+        } else {
+            vectorSegments.get(slot / segmentSlots).put(offset(slot), vector);
+        }
+    }
+
+    private void readVector(int slot, float[] out) {
+        if (quantization == Quantization.INT8) {
+            byte[] bytes = new byte[dimensions];
+            quantizedSegments.get(slot / segmentSlots).get(offset(slot), bytes);
+            for (int i = 0; i < dimensions; i++) {
+                out[i] = bytes[i] * scales[slot];
+            }
+        } else {
+            vectorSegments.get(slot / segmentSlots).get(offset(slot), out);
+        }
+    }
+
+    /**
+     * 移除已删除的槽位，重新紧凑排列
+     */
+    private void compact() {
+        int oldSize = size;
+        float[] vector = new float[dimensions];
+        List<float[]> liveVectors = new ArrayList<>();
+        List<String> liveIds = new ArrayList<>();
+        List<String> liveTexts = new ArrayList<>();
+        List<Map<String, Object>> liveMetadata = new ArrayList<>();
+        for (int slot = 0; slot < oldSize; slot++) {
+            if (!deleted.get(slot)) {
+                readVector(slot, vector);
+                liveVectors.add(vector.clone());
+                liveIds.add(ids.get(slot));
+                liveTexts.add(texts.get(slot));
+                liveMetadata.add(metadataList.get(slot));
+            }
+        }
+        ids.clear();
+        texts.clear();
+        metadataList.clear();
+        metadataBitmaps.clear();
+        slotById.clear();
+        deleted.clear();
+        vectorSegments.clear();
+        quantizedSegments.clear();
+        scales = null;
+        size = 0;
+        allocate(Math.max(INITIAL_CAPACITY, liveVectors.size() * 2));
+        for (int i = 0; i < liveVectors.size(); i++) {
+            writeVector(size, liveVectors.get(i));
+            ids.add(liveIds.get(i));
+            texts.add(liveTexts.get(i));
+            metadataList.add(liveMetadata.get(i));
+            metadataBitmaps.add(size, liveMetadata.get(i));
+            slotById.put(liveIds.get(i), size);
+            size++;
+        }
+        // 槽位编号已变化，倒排列表需要重建
+        centroids = null;
+        ivfDirty = true;
+        log.info("向量索引压缩完成：{} -> {} 个槽位", oldSize, size);
+    }
+
+    /**
+     * 向量数足够且数据有明显变化时重新执行 k-means 聚类
+     */
+    private void ensureIvfBuilt() {
+        lock.readLock().lock();
+        try {
+            if (!ivfDirty || slotById.size() < IVF_MIN_VECTORS) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (ivfDirty && slotById.size() >= IVF_MIN_VECTORS) {
+                buildIvf();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void buildIvf() {
+        long start = System.currentTimeMillis();
+        int[] liveSlots = new int[slotById.size()];
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (!deleted.get(slot)) {
+                liveSlots[count++] = slot;
+            }
+        }
+        int listCount = Math.max(1, (int) Math.sqrt(count));
+        // 1、均匀采样初始化聚类中心
+        centroids = new float[listCount][dimensions];
+        for (int c = 0; c < listCount; c++) {
+            readVector(liveSlots[(int) ((long) c * count / listCount)], centroids[c]);
+        }
+        // 2、迭代：分配到最近的中心，再用均值更新中心
+        float[] vector = new float[dimensions];
+        int[] assignment = new int[count];
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            float[][] sums = new float[listCount][dimensions];
+            for (int i = 0; i < count; i++) {
+                readVector(liveSlots[i], vector);
+                int nearest = nearestCentroid(vector);
+                assignment[i] = nearest;
+                for (int d = 0; d < dimensions; d++) {
+                    sums[nearest][d] += vector[d];
+                }
+            }
+            for (int c = 0; c < listCount; c++) {
+                float[] normalized = normalize(sums[c]);
+                // 空簇保留原中心
+                if (dot(normalized, normalized, dimensions) > 0) {
+                    centroids[c] = normalized;
+                }
+            }
+        }
+        // 3、生成倒排列表
+        invertedLists = new int[listCount][];
+        invertedListSizes = new int[listCount];
+        for (int c = 0; c < listCount; c++) {
+            invertedLists[c] = new int[16];
+        }
+        for (int i = 0; i < count; i++) {
+            appendToList(assignment[i], liveSlots[i]);
+        }
+        ivfDirty = false;
+        ivfBuiltSize = size;
+        log.info("IVF 聚类完成：{} 个向量，{} 个倒排列表，耗时 {} ms", count, listCount, System.currentTimeMillis() - start);
+    }
+
+    private void appendToList(int list, int slot) {
+        if (invertedListSizes[list] == invertedLists[list].length) {
+            invertedLists[list] = Arrays.copyOf(invertedLists[list], invertedLists[list].length * 2);
+        }
+        invertedLists[list][invertedListSizes[list]++] = slot;
+    }
+
+    private int nearestCentroid(float[] vector) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < centroids.length; c++) {
+            float score = dot(vector, centroids[c], dimensions);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private int[] nearestCentroids(float[] query, int n) {
+        Integer[] order = new Integer[centroids.length];
+        float[] scores = new float[centroids.length];
+        for (int c = 0; c < centroids.length; c++) {
+            order[c] = c;
+            scores[c] = dot(query, centroids[c], dimensions);
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        return Arrays.stream(order).limit(n).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 把过滤表达式转换为 SpEL，按槽位的元数据求值（与 SimpleVectorStore 的过滤语义一致）
+     */
+    private IntPredicate filterPredicate(Filter.Expression filterExpression) {
+        Expression expression = expressionParser.parseExpression(filterExpressionConverter.convertExpression(filterExpression));
+        return slot -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadataList.get(slot));
+            return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+        };
+    }
+
+    /**
+     * 堆中的候选结果
+     */
+    private record ScoredSlot(float score, int slot) {
+    }
+
+    private Document toDocument(int slot, float score) {
+        Map<String, Object> metadata = new HashMap<>(metadataList.get(slot));
+        metadata.put("distance", 1.0 - score);
+        return Document.builder()
+                .id(ids.get(slot))
+                .text(texts.get(slot))
+                .metadata(metadata)
+                .score((double) score)
+                .build();
+    }
+}
@@ -1,7 +1,7 @@
 package com.yupi.yuaiagent.rag;
 
 import jakarta.annotation.Resource;
-import org.springframework.ai.document.Document;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
@@ -9,20 +9,27 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
 
-import java.util.List;
+import java.util.Set;
 
 import static org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgDistanceType.COSINE_DISTANCE;
 import static org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgIndexType.HNSW;
 
 @Configuration
+@Slf4j
 public class PgVectorVectorStoreConfig {
 
     @Resource
     private LoveAppDocumentLoader loveAppDocumentLoader;
 
+    @Resource
+    private EmbeddingPipeline embeddingPipeline;
+
+    @Resource
+    private VectorStoreWarmup vectorStoreWarmup;
+
     @Bean
-    public VectorStore pgVectorVectorStore(JdbcTemplate jdbcTemplate, EmbeddingModel dashscopeEmbeddingModel) {
-        VectorStore vectorStore = PgVectorStore.builder(jdbcTemplate, dashscopeEmbeddingModel)
+    public VectorStore pgVectorVectorStore(JdbcTemplate jdbcTemplate, EmbeddingModel cachingEmbeddingModel) {
+        PgVectorStore vectorStore = PgVectorStore.builder(jdbcTemplate, cachingEmbeddingModel)
                 .dimensions(1536)
                 .distanceType(COSINE_DISTANCE)
                 .indexType(HNSW)
@@ -31,9 +38,20 @@ public class PgVectorVectorStoreConfig {
                 .vectorTableName("vector_store")
                 .maxDocumentBatchSize(10000)
                 .build();
-
-        List<Document> documents = loveAppDocumentLoader.loadMarkdowns();
-        vectorStore.add(documents);
-        return vectorStore;
+        // 建表和增量入库在后台执行，不阻塞应用启动
+        return vectorStoreWarmup.warm("pgVectorVectorStore", () -> {
+            // 先初始化表结构，才能查询已有数据做差异比对（重复执行是幂等的）
+            vectorStore.afterPropertiesSet();
+            // 增量入库：只嵌入新增或修改的文档块，删除已移除的块
+            LoveAppDocumentLoader.LoadResult loadResult = loveAppDocumentLoader.load();
+            // 部分加载时不删除任何已有的块，失败的文件不能被当成已删除
+            Set<String> completeSources = loadResult.partial() ? Set.of() : loadResult.completeSources();
+            if (loadResult.partial()) {
+                log.warn("知识库文档未完整加载，本次只新增不删除：{}", loadResult.failures());
+            }
+            new IncrementalDocumentIngestor(jdbcTemplate, "public.vector_store", embeddingPipeline)
+                    .ingest(vectorStore, loadResult.documents(), completeSources);
+            return vectorStore;
+        });
     }
-}
\ No newline at end of file
+}
@@ -1,48 +1,203 @@
 package com.yupi.yuaiagent.rag;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 查询重写器
  * 该类负责对用户输入的查询进行重写和优化
+ * <p>
+ * 重写需要额外调用一次大模型，为了不让 RAG 对话的延迟翻倍：
+ * 重写结果按归一化后的查询缓存；已经简洁规范的查询直接跳过重写；
+ * 可以设置等待时限，重写未在时限内完成时先使用原始查询，重写结果在后台完成后写入缓存供下次使用。
  */
 @Component
+@Slf4j
 public class QueryRewriter {
 
+    // 口语化的填充词，出现时说明查询需要重写
+    private static final List<String> FILLER_WORDS = List.of(
+            "嗯", "呃", "额", "唉", "哎", "那个", "就是说", "然后呢", "怎么说呢", "……", "...", "emm");
+
+    // 句中的断句符号，出现时说明是多句的叙述
+    private static final String SENTENCE_BREAKS = "。！？!?；;\n";
+
     private final QueryTransformer queryTransformer;
 
+    // 是否启用启发式判断，跳过已经规范的查询
+    private final boolean heuristicEnabled;
+
+    // 不超过该字符数的单句查询才可能跳过重写
+    private final int wellFormedMaxChars;
+
+    // 等待重写的时限，为 0 时一直等待
+    private final Duration deadline;
+
+    // 归一化查询 -> 重写结果
+    private final LRUCache<String, String> cache;
+
+    // 正在重写的查询，用于合并并发的相同请求
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong rewritten = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
     /**
      * 构造函数，初始化查询重写器
      * @param dashscopeChatModel DashScope聊天模型，用于构建查询转换器
      */
-    public QueryRewriter(ChatModel dashscopeChatModel) {
-        ChatClient.Builder builder = ChatClient.builder(dashscopeChatModel);
+    @Autowired
+    public QueryRewriter(ChatModel dashscopeChatModel,
+                         @Value("${rag.rewrite.cache-size:1000}") int cacheSize,
+                         @Value("${rag.rewrite.cache-ttl:1h}") Duration cacheTtl,
+                         @Value("${rag.rewrite.heuristic-enabled:true}") boolean heuristicEnabled,
+                         @Value("${rag.rewrite.well-formed-max-chars:30}") int wellFormedMaxChars,
+                         @Value("${rag.rewrite.deadline:0}") Duration deadline) {
         // 创建查询重写转换器
         // 使用ChatClient构建器来配置和初始化查询转换器
-        queryTransformer = RewriteQueryTransformer.builder()
-                .chatClientBuilder(builder)
-                .build();
+        this(RewriteQueryTransformer.builder()
+                        .chatClientBuilder(ChatClient.builder(dashscopeChatModel))
+                        .build(),
+                cacheSize, cacheTtl, heuristicEnabled, wellFormedMaxChars, deadline);
+    }
+
+    QueryRewriter(QueryTransformer queryTransformer, int cacheSize, Duration cacheTtl, boolean heuristicEnabled,
+                  int wellFormedMaxChars, Duration deadline) {
+        this.queryTransformer = queryTransformer;
+        this.cache = CacheUtil.newLRUCache(cacheSize, cacheTtl.toMillis());
+        this.heuristicEnabled = heuristicEnabled;
+        this.wellFormedMaxChars = wellFormedMaxChars;
+        this.deadline = deadline;
     }
 
     /**
      * 执行查询重写
-     * 将用户输入的原始查询转换为优化后的查询
+     * 将用户输入的原始查询转换为优化后的查询；跳过、超时或重写失败时返回原始查询
      * @param prompt 用户输入的原始查询文本
      * @return 重写后的查询文本
      */
     public String doQueryRewrite(String prompt) {
+        // 1、已经规范的查询无需重写
+        if (heuristicEnabled && isWellFormed(prompt, wellFormedMaxChars)) {
+            skipped.incrementAndGet();
+            return prompt;
+        }
+        // 2、查缓存
+        String key = normalize(prompt);
+        String cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        // 3、异步重写，相同查询的并发请求共用一次调用
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> future = inFlight.putIfAbsent(key, created);
+        if (future == null) {
+            future = created;
+            executor.execute(() -> {
+                try {
+                    created.complete(rewrite(prompt, key));
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        }
+        try {
+            return deadline.isZero() ? future.get() : future.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超时先使用原始查询，重写结果在后台完成后写入缓存
+            timeouts.incrementAndGet();
+            log.info("查询重写超过 {} ms，使用原始查询：{}", deadline.toMillis(), prompt);
+            return prompt;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return prompt;
+        } catch (ExecutionException e) {
+            log.warn("查询重写失败，使用原始查询：{}", prompt, e.getCause());
+            return prompt;
+        }
+    }
+
+    public RewriteStats getStats() {
+        return new RewriteStats(cacheHits.get(), skipped.get(), rewritten.get(), timeouts.get(), cache.size());
+    }
+
+    private String rewrite(String prompt, String key) {
         // 创建查询对象
         Query query = new Query(prompt);
         // 执行查询重写
         // 使用查询转换器对原始查询进行处理
         Query transformedQuery = queryTransformer.transform(query);
-        // 输出重写后的查询
+        rewritten.incrementAndGet();
         // 返回转换后的查询文本
+        cache.put(key, transformedQuery.text());
         return transformedQuery.text();
     }
+
+    /**
+     * 启发式判断查询是否已经简洁规范：长度适中的单句，且不含口语化的填充词
+     */
+    static boolean isWellFormed(String prompt, int maxChars) {
+        String text = prompt == null ? "" : prompt.strip();
+        if (text.isEmpty() || text.length() > maxChars) {
+            return false;
+        }
+        // 末尾的标点不算断句
+        for (int i = 0; i < text.length() - 1; i++) {
+            if (SENTENCE_BREAKS.indexOf(text.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        String lower = text.toLowerCase();
+        return FILLER_WORDS.stream().noneMatch(lower::contains);
+    }
+
+    /**
+     * 缓存键：去掉首尾空白、合并连续空白并转为小写
+     */
+    private static String normalize(String prompt) {
+        return prompt == null ? "" : prompt.strip().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * 查询重写统计指标
+     *
+     * @param cacheHits 命中缓存的次数
+     * @param skipped   判断为规范查询、跳过重写的次数
+     * @param rewritten 实际调用大模型重写的次数
+     * @param timeouts  超过时限、先使用原始查询的次数
+     * @param size      缓存条目数
+     */
+    public record RewriteStats(long cacheHits, long skipped, long rewritten, long timeouts, int size) {
+    }
 }
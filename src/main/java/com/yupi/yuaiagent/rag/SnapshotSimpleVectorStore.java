@@ -0,0 +1,272 @@
+package com.yupi.yuaiagent.rag;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStoreContent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 支持二进制快照的内存向量存储
+ * <p>
+ * SimpleVectorStore 自带的 save/load 使用 JSON，向量按文本数字存储，体积大、解析慢。
+ * 这里把已经嵌入（和补充元信息）的内容保存为紧凑的二进制快照：文件头记录源文档指纹，
+ * 随后是每条内容的 ID、正文和元数据，最后是连续存放的全部向量。启动时内存映射快照文件，
+ * 指纹一致就直接加载，跳过关键词补充和嵌入的所有大模型调用。
+ * 带元数据过滤条件的检索先用元数据位图索引求出匹配的子集，只对子集计算相似度。
+ */
+@Slf4j
+public class SnapshotSimpleVectorStore extends SimpleVectorStore {
+
+    // 快照文件魔数 "YVS1"
+    private static final int MAGIC = 0x59565331;
+
+    // 快照格式版本，格式变化时递增，旧快照自动失效
+    private static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // 元数据位图索引及槽位对应的内容，存储变化后在下次过滤检索时重建
+    private final MetadataBitmapIndex metadataBitmaps = new MetadataBitmapIndex();
+
+    private SimpleVectorStoreContent[] slots = new SimpleVectorStoreContent[0];
+
+    private volatile boolean partitionsDirty = true;
+
+    public SnapshotSimpleVectorStore(EmbeddingModel embeddingModel) {
+        super(SimpleVectorStore.builder(embeddingModel));
+    }
+
+    @Override
+    public void doAdd(List<Document> documents) {
+        super.doAdd(documents);
+        partitionsDirty = true;
+    }
+
+    @Override
+    public void doDelete(List<String> idList) {
+        super.doDelete(idList);
+        partitionsDirty = true;
+    }
+
+    /**
+     * 过滤条件能由位图索引求出时只对匹配的内容计算相似度，否则交给 SimpleVectorStore 逐个求值过滤表达式
+     */
+    @Override
+    public List<Document> doSimilaritySearch(SearchRequest request) {
+        if (!request.hasFilterExpression()) {
+            return super.doSimilaritySearch(request);
+        }
+        SimpleVectorStoreContent[] contents;
+        BitSet candidates;
+        synchronized (metadataBitmaps) {
+            if (partitionsDirty) {
+                rebuildPartitions();
+            }
+            contents = slots;
+            candidates = metadataBitmaps.resolve(request.getFilterExpression(), contents.length);
+        }
+        if (candidates == null) {
+            return super.doSimilaritySearch(request);
+        }
+        float[] query = this.embeddingModel.embed(request.getQuery());
+        List<Document> results = new ArrayList<>(candidates.cardinality());
+        for (int slot = candidates.nextSetBit(0); slot >= 0 && slot < contents.length; slot = candidates.nextSetBit(slot + 1)) {
+            double score = cosineSimilarity(query, contents[slot].getEmbedding());
+            if (score >= request.getSimilarityThreshold()) {
+                results.add(contents[slot].toDocument(score));
+            }
+        }
+        results.sort(Comparator.comparing(Document::getScore).reversed());
+        return results.subList(0, Math.min(request.getTopK(), results.size()));
+    }
+
+    private void rebuildPartitions() {
+        // 先清除标记再复制内容：复制期间并发写入的内容会重新设置标记，下次过滤检索时再重建
+        partitionsDirty = false;
+        SimpleVectorStoreContent[] contents = this.store.values().toArray(SimpleVectorStoreContent[]::new);
+        metadataBitmaps.clear();
+        for (int slot = 0; slot < contents.length; slot++) {
+            metadataBitmaps.add(slot, contents[slot].getMetadata());
+        }
+        slots = contents;
+    }
+
+    private static double cosineSimilarity(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors lengths must be equal");
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    /**
+     * 已嵌入的全部内容，用于迁移到其他索引
+     */
+    public Collection<SimpleVectorStoreContent> getContents() {
+        return Collections.unmodifiableCollection(this.store.values());
+    }
+
+    /**
+     * 计算源文档和模型配置的指纹，任意一项变化都会导致快照失效
+     *
+     * @param documents   源文档（补充元信息、嵌入之前）
+     * @param modelConfig 影响结果的模型配置，如嵌入模型名称、关键词补充模型名称
+     */
+    public static String fingerprint(List<Document> documents, String modelConfig) {
+        MessageDigest digest = DigestUtil.digester("SHA-256").getDigest();
+        update(digest, "v" + FORMAT_VERSION);
+        update(digest, modelConfig);
+        for (Document document : documents) {
+            update(digest, document.getText());
+            // 元数据按键排序，保证指纹稳定
+            update(digest, String.valueOf(new TreeMap<>(document.getMetadata())));
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    /**
+     * 把当前内容保存为二进制快照（先写临时文件再原子替换）
+     *
+     * @param path        快照文件路径
+     * @param fingerprint 源文档指纹
+     */
+    public void saveSnapshot(Path path, String fingerprint) throws IOException {
+        List<SimpleVectorStoreContent> contents = new ArrayList<>(this.store.values());
+        int dimensions = contents.isEmpty() ? 0 : contents.get(0).getEmbedding().length;
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), "snapshot", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeBytes(out, fingerprint.getBytes(StandardCharsets.UTF_8));
+            out.writeInt(contents.size());
+            out.writeInt(dimensions);
+            // 1、每条内容的 ID、正文和元数据
+            for (SimpleVectorStoreContent content : contents) {
+                writeBytes(out, content.getId().getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, content.getText().getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, OBJECT_MAPPER.writeValueAsBytes(content.getMetadata()));
+            }
+            // 2、按 4 字节对齐后连续写入全部向量
+            int padding = (4 - out.size() % 4) % 4;
+            out.write(new byte[padding]);
+            for (SimpleVectorStoreContent content : contents) {
+                float[] embedding = content.getEmbedding();
+                if (embedding.length != dimensions) {
+                    throw new IOException("Inconsistent embedding dimensions: " + embedding.length + " != " + dimensions);
+                }
+                for (float value : embedding) {
+                    out.writeFloat(value);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("向量存储快照已保存：{}，{} 条内容，{} 维", path, contents.size(), dimensions);
+    }
+
+    /**
+     * 内存映射并加载快照，快照不存在、格式不符或指纹不一致时返回 false
+     *
+     * @param path        快照文件路径
+     * @param fingerprint 期望的源文档指纹
+     */
+    public boolean loadSnapshot(Path path, String fingerprint) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.info("向量存储快照格式不符，重新构建：{}", path);
+                return false;
+            }
+            String snapshotFingerprint = new String(readBytes(buffer), StandardCharsets.UTF_8);
+            if (!snapshotFingerprint.equals(fingerprint)) {
+                log.info("源文档或模型配置已变化，重新构建向量存储快照：{}", path);
+                return false;
+            }
+            int count = buffer.getInt();
+            int dimensions = buffer.getInt();
+            List<String> ids = new ArrayList<>(count);
+            List<String> texts = new ArrayList<>(count);
+            List<Map<String, Object>> metadataList = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(new String(readBytes(buffer), StandardCharsets.UTF_8));
+                texts.add(new String(readBytes(buffer), StandardCharsets.UTF_8));
+                metadataList.add(OBJECT_MAPPER.readValue(readBytes(buffer), new TypeReference<>() {
+                }));
+            }
+            buffer.position(buffer.position() + (4 - buffer.position() % 4) % 4);
+            FloatBuffer floats = buffer.asFloatBuffer();
+            this.store.clear();
+            for (int i = 0; i < count; i++) {
+                float[] embedding = new float[dimensions];
+                floats.get(embedding);
+                this.store.put(ids.get(i), new SimpleVectorStoreContent(ids.get(i), texts.get(i), metadataList.get(i), embedding));
+            }
+            partitionsDirty = true;
+            log.info("已从快照加载向量存储：{}，{} 条内容，{} 维", path, count, dimensions);
+            return true;
+        } catch (Exception e) {
+            log.warn("向量存储快照读取失败，重新构建：{}", path, e);
+            this.store.clear();
+            partitionsDirty = true;
+            return false;
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,43 @@
+package com.yupi.yuaiagent.rag;
+
+/**
+ * Token 数估算
+ * <p>
+ * 不做真正的 BPE 编码：汉字（Unicode HAN 字符）约 1 个字 1 个 Token，其他字符（含空白和假名、谚文等）约 4 个字符 1 个 Token。
+ * 嵌入批次切分、文本切分和上下文压缩都使用这里的估算，保证各处的预算口径一致。
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的 Token 数
+     */
+    public static int estimate(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int han = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isHan(text.charAt(i))) {
+                han++;
+            }
+        }
+        return estimate(han, text.length() - han);
+    }
+
+    /**
+     * 按已经统计好的字符数估算 Token 数
+     *
+     * @param hanChars   汉字数
+     * @param otherChars 其他字符数
+     */
+    public static int estimate(int hanChars, int otherChars) {
+        return hanChars + (otherChars + 3) / 4;
+    }
+
+    static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+}
@@ -0,0 +1,89 @@
+package com.yupi.yuaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 向量存储预热调度
+ * <p>
+ * 各个向量存储的构建任务在固定大小的线程池中后台执行，线程数限制了同时进行的入库任务数，
+ * 避免多个知识库同时抢占嵌入接口配额。关闭预热时在当前线程同步构建，与原来的行为一致。
+ */
+@Component
+@Slf4j
+public class VectorStoreWarmup implements DisposableBean {
+
+    // 是否后台预热
+    private final boolean async;
+
+    // 就绪前检索的最长等待时间
+    private final Duration searchTimeout;
+
+    private final ExecutorService executor;
+
+    // 名称 -> 预热中的向量存储
+    private final Map<String, WarmingVectorStore> stores = new ConcurrentHashMap<>();
+
+    public VectorStoreWarmup(@Value("${rag.warmup.async:true}") boolean async,
+                             @Value("${rag.warmup.threads:2}") int threads,
+                             @Value("${rag.warmup.search-timeout:2s}") Duration searchTimeout) {
+        this.async = async;
+        this.searchTimeout = searchTimeout;
+        this.executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("vector-store-warmup-", 0).daemon(true).factory());
+    }
+
+    /**
+     * 创建后台预热的向量存储
+     *
+     * @param name   名称，用于日志和就绪状态
+     * @param loader 构建并填充向量存储的任务
+     * @return 异步预热时返回 WarmingVectorStore，否则返回同步构建好的向量存储
+     */
+    public VectorStore warm(String name, Supplier<VectorStore> loader) {
+        if (!async) {
+            return loader.get();
+        }
+        WarmingVectorStore store = new WarmingVectorStore(name, loader, executor, searchTimeout);
+        stores.put(name, store);
+        log.info("向量存储 {} 开始后台预热", name);
+        return store;
+    }
+
+    /**
+     * 是否所有向量存储都已就绪（预热失败也视为未就绪）
+     */
+    public boolean isReady() {
+        return stores.values().stream().allMatch(store -> store.getState() == WarmingVectorStore.State.READY);
+    }
+
+    /**
+     * 指定的向量存储是否已就绪，同步构建（未经过预热）的向量存储视为就绪
+     */
+    public boolean isReady(String name) {
+        WarmingVectorStore store = stores.get(name);
+        return store == null || store.getState() == WarmingVectorStore.State.READY;
+    }
+
+    public Map<String, WarmingVectorStore.Readiness> getReadiness() {
+        Map<String, WarmingVectorStore.Readiness> readiness = new LinkedHashMap<>();
+        stores.forEach((name, store) -> readiness.put(name, store.getReadiness()));
+        return readiness;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,144 @@
+package com.yupi.yuaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 后台预热的向量存储
+ * <p>
+ * 加载文档、补充元信息、嵌入入库都在后台线程中执行，Bean 创建时立即返回，应用启动不再等待知识库就绪。
+ * 就绪前的检索最多等待 searchTimeout，仍未就绪时返回空结果（由查询增强器按无上下文处理），
+ * 写入和删除则一直等到就绪后再执行。就绪状态可以通过 /health/ready 查看。
+ * 就绪前的空检索结果只会得到兜底回答，语义缓存不保存这段时间的回答（见 SemanticCacheAdvisorConfig）。
+ */
+@Slf4j
+public class WarmingVectorStore implements VectorStore {
+
+    /**
+     * 就绪状态
+     */
+    public enum State {
+        WARMING, READY, FAILED
+    }
+
+    private final String name;
+
+    private final CompletableFuture<VectorStore> delegate;
+
+    // 就绪前检索的最长等待时间
+    private final Duration searchTimeout;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private volatile long readyAt;
+
+    /**
+     * @param name          名称，用于日志和就绪状态
+     * @param loader        构建并填充向量存储的任务
+     * @param executor      执行构建任务的线程池
+     * @param searchTimeout 就绪前检索的最长等待时间
+     */
+    public WarmingVectorStore(String name, Supplier<VectorStore> loader, Executor executor, Duration searchTimeout) {
+        this.name = name;
+        this.searchTimeout = searchTimeout;
+        this.delegate = CompletableFuture.supplyAsync(loader, executor).whenComplete((store, e) -> {
+            readyAt = System.currentTimeMillis();
+            if (e != null) {
+                log.error("向量存储 {} 预热失败", name, e);
+            } else {
+                log.info("向量存储 {} 预热完成，耗时 {} ms", name, readyAt - startedAt);
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        awaitDelegate().add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        awaitDelegate().delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        awaitDelegate().delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        VectorStore store = getIfReady(searchTimeout);
+        if (store == null) {
+            log.warn("向量存储 {} 尚未就绪（{}），返回空的检索结果", name, getState());
+            return List.of();
+        }
+        return store.similaritySearch(request);
+    }
+
+    public State getState() {
+        if (!delegate.isDone()) {
+            return State.WARMING;
+        }
+        return delegate.isCompletedExceptionally() ? State.FAILED : State.READY;
+    }
+
+    public Readiness getReadiness() {
+        long elapsed = (delegate.isDone() ? readyAt : System.currentTimeMillis()) - startedAt;
+        String error = null;
+        if (delegate.isCompletedExceptionally()) {
+            error = delegate.handle((store, e) -> String.valueOf(e instanceof CompletionException ? e.getCause() : e)).join();
+        }
+        return new Readiness(getState(), elapsed, error);
+    }
+
+    /**
+     * 最多等待 timeout，返回就绪的向量存储；未就绪或预热失败时返回 null
+     */
+    private VectorStore getIfReady(Duration timeout) {
+        try {
+            return timeout.isZero() ? delegate.getNow(null) : delegate.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException | CompletionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private VectorStore awaitDelegate() {
+        try {
+            return delegate.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Vector store " + name + " failed to warm up", e.getCause());
+        }
+    }
+
+    /**
+     * 就绪状态
+     *
+     * @param state         当前状态
+     * @param elapsedMillis 预热耗时（未完成时为已用时间）
+     * @param error         预热失败的原因
+     */
+    public record Readiness(State state, long elapsedMillis, String error) {
+    }
+}
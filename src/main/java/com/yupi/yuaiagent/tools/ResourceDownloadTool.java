@@ -1,30 +1,395 @@
 package com.yupi.yuaiagent.tools;
 
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.http.HttpUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.SecureUtil;
 import com.yupi.yuaiagent.constant.FileConstant;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 资源下载工具
+ * <p>
+ * 响应体通过 FileChannel.transferFrom 直接流式写入文件（JDK 内部使用直接缓冲区），不在堆中缓存整个文件。
+ * 下载有大小上限和截止时间：Content-Length 超限时不下载，边下边检查实际字节数，超时后保留未完成的文件，
+ * 下次下载同一 URL 时用 Range 请求续传（有 ETag 或 Last-Modified 时带上 If-Range，资源变化则重新下载）。
+ * 下载完成的内容按 SHA-256 只存一份（只读），目标文件是它的普通副本，可以自由修改；同一 URL 再次下载时带上 If-None-Match / If-Modified-Since，
+ * 服务器返回 304 才复用已有内容，否则重新下载（内容相同时仍只存一份）。
+ * 同时进行的下载数有上限，每次下载报告字节数和吞吐量。
  */
+@Slf4j
 public class ResourceDownloadTool {
 
+    // 默认文件大小上限
+    private static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+
+    // 默认同时进行的下载数
+    private static final int DEFAULT_MAX_CONCURRENT = 2;
+
+    // 默认单次下载的截止时间
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(5);
+
+    // 每次 transferFrom 传输的字节数
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    // 下载内容、未完成文件的存放目录，位于下载目录下
+    private static final String STORE_DIR = ".store";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ToolHttpClient httpClient;
+
+    private final Path downloadDir;
+
+    private final Path blobDir;
+
+    private final Path partialDir;
+
+    private final long maxBytes;
+
+    private final Duration timeout;
+
+    // 下载槽位
+    private final Semaphore slots;
+
+    // 分段锁：同一 URL 的下载串行进行，避免同时写同一个未完成文件；同一目标文件的写入也串行进行
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    // URL 摘要 -> 内容摘要和验证信息
+    private final Map<String, IndexedBlob> urlIndex = new ConcurrentHashMap<>();
+
+    private final AtomicLong downloads = new AtomicLong();
+
+    private final AtomicLong resumed = new AtomicLong();
+
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    private final AtomicLong revalidated = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    public ResourceDownloadTool() {
+        this(new ToolHttpClient());
+    }
+
+    public ResourceDownloadTool(ToolHttpClient httpClient) {
+        this(httpClient, FileConstant.FILE_SAVE_DIR + "/download", DEFAULT_MAX_BYTES, DEFAULT_MAX_CONCURRENT, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param httpClient    共享的 HTTP 客户端
+     * @param downloadDir   下载目录
+     * @param maxBytes      单个文件的大小上限
+     * @param maxConcurrent 同时进行的下载数
+     * @param timeout       单次下载（含等待槽位）的截止时间
+     */
+    public ResourceDownloadTool(ToolHttpClient httpClient, String downloadDir, long maxBytes, int maxConcurrent,
+                                Duration timeout) {
+        this.httpClient = httpClient;
+        this.downloadDir = Paths.get(downloadDir);
+        this.blobDir = this.downloadDir.resolve(STORE_DIR).resolve("blobs");
+        this.partialDir = this.downloadDir.resolve(STORE_DIR).resolve("partial");
+        this.maxBytes = maxBytes;
+        this.timeout = timeout;
+        this.slots = new Semaphore(maxConcurrent, true);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
     @Tool(description = "Download a resource from a given URL")
     public String downloadResource(@ToolParam(description = "URL of the resource to download") String url, @ToolParam(description = "Name of the file to save the downloaded resource") String fileName) {
-        String fileDir = FileConstant.FILE_SAVE_DIR + "/download";
-        String filePath = fileDir + "/" + fileName;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean acquired = false;
         try {
-            // 创建目录
-            FileUtil.mkdir(fileDir);
-            // 使用 Hutool 的 downloadFile 方法下载资源
-            HttpUtil.downloadFile(url, new File(filePath));
-            return "Resource downloaded successfully to: " + filePath;
+            Path target = resolveTarget(fileName);
+            acquired = slots.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                return "Error downloading resource: too many concurrent downloads, try again later";
+            }
+            String urlKey = SecureUtil.sha256(ToolResponseCache.normalizeUrl(url));
+            // 同时锁住 URL 和目标文件，按分段序号加锁避免死锁
+            int urlStripe = urlKey.hashCode() & (LOCK_STRIPES - 1);
+            int targetStripe = target.toAbsolutePath().normalize().hashCode() & (LOCK_STRIPES - 1);
+            ReentrantLock first = locks[Math.min(urlStripe, targetStripe)];
+            ReentrantLock second = locks[Math.max(urlStripe, targetStripe)];
+            first.lock();
+            second.lock();
+            try {
+                return "Resource downloaded successfully to: " + target + " (" + download(url, urlKey, target, deadline) + ")";
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error downloading resource: interrupted";
         } catch (Exception e) {
             return "Error downloading resource: " + e.getMessage();
+        } finally {
+            if (acquired) {
+                slots.release();
+            }
+        }
+    }
+
+    public DownloadStats getStats() {
+        return new DownloadStats(downloads.get(), resumed.get(), deduplicated.get(), revalidated.get(), rejected.get(),
+                bytesReceived.get());
+    }
+
+    /**
+     * 未完成文件的路径
+     */
+    Path partialPath(String url) {
+        return partialDir.resolve(SecureUtil.sha256(ToolResponseCache.normalizeUrl(url)) + ".part");
+    }
+
+    private String download(String url, String urlKey, Path target, long deadline) throws IOException {
+        // 同一 URL 下载过且内容还在时，向服务器确认资源是否变化
+        IndexedBlob known = urlIndex.get(urlKey);
+        if (known != null && !Files.exists(blobDir.resolve(known.hash()))) {
+            known = null;
+        }
+        Files.createDirectories(partialDir);
+        Files.createDirectories(blobDir);
+        Path part = partialDir.resolve(urlKey + ".part");
+        Path validatorPath = partialDir.resolve(urlKey + ".validator");
+        long offset = Files.exists(part) ? Files.size(part) : 0;
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).GET()
+                .timeout(Duration.ofNanos(Math.max(1, deadline - System.nanoTime())));
+        if (offset > 0) {
+            builder.header("Range", "bytes=" + offset + "-");
+            if (Files.exists(validatorPath)) {
+                builder.header("If-Range", Files.readString(validatorPath, StandardCharsets.UTF_8));
+            }
+        } else if (known != null) {
+            if (known.etag() != null) {
+                builder.header("If-None-Match", known.etag());
+            }
+            if (known.lastModified() != null) {
+                builder.header("If-Modified-Since", known.lastModified());
+            }
         }
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = httpClient.send(builder, HttpResponse.BodyHandlers.ofInputStream());
+        long received;
+        try (InputStream body = response.body()) {
+            int status = response.statusCode();
+            if (status == 304 && known != null) {
+                copy(blobDir.resolve(known.hash()), target);
+                revalidated.incrementAndGet();
+                return Files.size(target) + " bytes, not modified, reused the stored copy";
+            }
+            boolean resuming = offset > 0 && status == 206 && contentRangeStart(response) == offset;
+            if (!resuming) {
+                if (status < 200 || status >= 300 || status == 206) {
+                    // 续传失败（如 416）时丢弃未完成的文件，下次重新下载
+                    discard(part, validatorPath);
+                    throw new IOException("HTTP " + status);
+                }
+                offset = 0;
+            }
+            long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (contentLength >= 0 && offset + contentLength > maxBytes) {
+                rejected.incrementAndGet();
+                discard(part, validatorPath);
+                throw new IOException("Resource is " + (offset + contentLength) + " bytes, exceeding the limit of " + maxBytes + " bytes");
+            }
+            saveValidator(response, validatorPath);
+            received = transfer(body, part, validatorPath, offset, deadline);
+            if (resuming) {
+                resumed.incrementAndGet();
+            }
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        bytesReceived.addAndGet(received);
+        downloads.incrementAndGet();
+        String hash = store(part);
+        Files.deleteIfExists(validatorPath);
+        urlIndex.put(urlKey, new IndexedBlob(hash, response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null)));
+        copy(blobDir.resolve(hash), target);
+        double kbPerSecond = received / 1024.0 / (elapsedNanos / 1e9);
+        log.info("下载完成：{}，{} 字节（本次 {} 字节，{} KB/s）", url, offset + received, received, String.format("%.1f", kbPerSecond));
+        return String.format("%d bytes%s, %.1f KB/s", offset + received,
+                offset > 0 ? ", resumed from byte " + offset : "", kbPerSecond);
+    }
+
+    /**
+     * 把响应体从 offset 处开始写入未完成文件，返回本次写入的字节数；超过大小上限时删除文件，超时时保留文件以便续传
+     */
+    private long transfer(InputStream body, Path part, Path validatorPath, long offset, long deadline) throws IOException {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        // 到截止时间仍未完成时关闭响应流，阻塞的读取随之失败
+        CompletableFuture.delayedExecutor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).execute(() -> {
+            if (!done.get()) {
+                timedOut.set(true);
+                try {
+                    body.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        StandardOpenOption mode = offset > 0 ? StandardOpenOption.WRITE : StandardOpenOption.TRUNCATE_EXISTING;
+        long position = offset;
+        try (FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+             ReadableByteChannel source = Channels.newChannel(body)) {
+            long n;
+            // 最多多写一个字节，用于判断是否超过上限
+            while ((n = file.transferFrom(source, position, Math.min(TRANSFER_CHUNK, maxBytes + 1 - position))) > 0) {
+                position += n;
+                if (position > maxBytes) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new HttpTimeoutException("Download timed out after " + (position - offset) + " bytes, retry to resume");
+            }
+            throw e;
+        } finally {
+            done.set(true);
+        }
+        if (position > maxBytes) {
+            rejected.incrementAndGet();
+            discard(part, validatorPath);
+            throw new IOException("Resource exceeds the limit of " + maxBytes + " bytes");
+        }
+        return position - offset;
+    }
+
+    /**
+     * 按内容摘要保存下载完成的文件，已有相同内容时丢弃本次的文件，返回内容摘要
+     */
+    private String store(Path part) throws IOException {
+        String hash = sha256(part);
+        Path blob = blobDir.resolve(hash);
+        if (Files.exists(blob)) {
+            Files.delete(part);
+            deduplicated.incrementAndGet();
+        } else {
+            Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE);
+            // 存储中的内容只被复制，不会被修改，设为只读
+            blob.toFile().setReadOnly();
+        }
+        return hash;
+    }
+
+    /**
+     * 把内容复制为目标文件（不复制只读属性），目标文件被修改不会影响存储中的内容和其他下载
+     */
+    private static void copy(Path blob, Path target) throws IOException {
+        Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String sha256(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return HexUtil.encodeHexStr(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 记录强 ETag 或 Last-Modified，续传时用于 If-Range
+     */
+    private static void saveValidator(HttpResponse<?> response, Path validatorPath) throws IOException {
+        String validator = response.headers().firstValue("ETag")
+                .filter(etag -> !etag.startsWith("W/"))
+                .or(() -> response.headers().firstValue("Last-Modified"))
+                .orElse(null);
+        if (validator != null) {
+            Files.writeString(validatorPath, validator, StandardCharsets.UTF_8);
+        } else {
+            Files.deleteIfExists(validatorPath);
+        }
+    }
+
+    /**
+     * 解析 Content-Range: bytes start-end/total 中的起始位置，无法解析时返回 -1
+     */
+    private static long contentRangeStart(HttpResponse<?> response) {
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        if (!contentRange.startsWith("bytes ") || contentRange.indexOf('-') < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), contentRange.indexOf('-')).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void discard(Path part, Path validatorPath) throws IOException {
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(validatorPath);
+    }
+
+    /**
+     * 只保留文件名部分，防止写到下载目录之外
+     */
+    private Path resolveTarget(String fileName) throws IOException {
+        Path name = fileName == null || fileName.isBlank() ? null : Paths.get(fileName.trim()).getFileName();
+        if (name == null || name.toString().equals("..") || name.toString().equals(".") || name.toString().equals(STORE_DIR)) {
+            throw new IllegalArgumentException("Invalid file name: " + fileName);
+        }
+        Files.createDirectories(downloadDir);
+        return downloadDir.resolve(name);
+    }
+
+    /**
+     * URL 对应的已下载内容
+     *
+     * @param hash         内容摘要
+     * @param etag         下载时的 ETag，用于 If-None-Match
+     * @param lastModified 下载时的 Last-Modified，用于 If-Modified-Since
+     */
+    private record IndexedBlob(String hash, String etag, String lastModified) {
+    }
+
+    /**
+     * 下载统计指标
+     */
+    public record DownloadStats(long downloads, long resumed, long deduplicated, long revalidated, long rejected,
+                                long bytesReceived) {
     }
 }
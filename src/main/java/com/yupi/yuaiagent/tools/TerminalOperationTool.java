@@ -5,6 +5,7 @@ import org.springframework.ai.tool.annotation.ToolParam;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 
 /**
@@ -15,23 +16,42 @@ public class TerminalOperationTool {
     @Tool(description = "Execute a command in the terminal")
     public String executeTerminalCommand(@ToolParam(description = "Command to execute in the terminal") String command) {
         StringBuilder output = new StringBuilder();
+        Process process = null;
         try {
             ProcessBuilder builder = new ProcessBuilder("cmd.exe", "/c", command);
 //            Process process = Runtime.getRuntime().exec(command);
-            Process process = builder.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
+            process = builder.start();
+            // 在单独的线程中读取输出，当前线程等待进程结束，被中断时可以立即结束进程
+            InputStream stdout = process.getInputStream();
+            StringBuilder lines = new StringBuilder();
+            Thread reader = Thread.ofVirtual().start(() -> readLines(stdout, lines));
             int exitCode = process.waitFor();
+            reader.join();
+            output.append(lines);
             if (exitCode != 0) {
                 output.append("Command execution failed with exit code: ").append(exitCode);
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             output.append("Error executing command: ").append(e.getMessage());
+        } catch (InterruptedException e) {
+            // 被中断（如本轮工具调用超时）时结束命令进程，并保留中断状态交给调用方
+            if (process != null) {
+                process.destroy();
+            }
+            Thread.currentThread().interrupt();
+            output.append("Error executing command: interrupted");
         }
         return output.toString();
     }
+
+    private static void readLines(InputStream in, StringBuilder lines) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.append(line).append("\n");
+            }
+        } catch (IOException ignored) {
+            // 进程被结束时输出流随之关闭
+        }
+    }
 }
@@ -0,0 +1,425 @@
+package com.yupi.yuaiagent.tools;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 工具共享的 HTTP 客户端
+ * <p>
+ * 搜索、抓取、下载工具原来分别使用 HttpUtil 和 Jsoup，各自建立连接，超时也是默认值。
+ * 这里统一使用一个 JDK HttpClient：虚拟线程执行、连接复用（同一主机的重复调用不需要重新握手）、优先 HTTP/2、
+ * 请求 gzip 压缩并自动解压。每个主机同时进行的请求数有上限，整个请求（等待许可、响应头、读取响应体）
+ * 受同一个截止时间约束，响应慢的主机不会卡住代理的某一步。
+ */
+@Slf4j
+public class ToolHttpClient implements AutoCloseable {
+
+    // 默认连接超时时间
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    // 默认请求截止时间
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(15);
+
+    // 默认每个主机的并发请求上限
+    private static final int DEFAULT_MAX_CONCURRENT_PER_HOST = 4;
+
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; YuAiAgent/1.0)";
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final HttpClient client;
+
+    private final Duration requestTimeout;
+
+    private final int maxConcurrentPerHost;
+
+    // 主机 -> 并发许可，没有请求使用时移除，访问过的主机不会一直占用内存
+    private final ConcurrentMap<String, HostSlot> hostSlots = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    public ToolHttpClient() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, DEFAULT_MAX_CONCURRENT_PER_HOST);
+    }
+
+    /**
+     * @param connectTimeout       连接超时时间
+     * @param requestTimeout       默认的请求截止时间
+     * @param maxConcurrentPerHost 每个主机同时进行的请求数上限
+     */
+    public ToolHttpClient(Duration connectTimeout, Duration requestTimeout, int maxConcurrentPerHost) {
+        this.requestTimeout = requestTimeout;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(connectTimeout)
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * 使用默认截止时间发送 GET 请求
+     *
+     * @see #get(String, Map, int, Duration)
+     */
+    public Response get(String url, Map<String, String> headers, int maxBodyBytes) throws IOException {
+        return get(url, headers, maxBodyBytes, requestTimeout);
+    }
+
+    /**
+     * 发送 GET 请求并读取响应体，响应体超过上限时截断（与 Jsoup 的 maxBodySize 一致）
+     *
+     * @param url          请求地址
+     * @param headers      额外的请求头
+     * @param maxBodyBytes 响应体字节上限（解压后），不大于 0 表示不限制
+     * @param timeout      整个请求的截止时间
+     * @return 响应
+     * @throws HttpTimeoutException 等待主机许可、响应头或响应体超时
+     */
+    public Response get(String url, Map<String, String> headers, int maxBodyBytes, Duration timeout) throws IOException {
+        URI uri = URI.create(url);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).GET().timeout(timeout);
+        applyHeaders(builder, headers);
+        HostSlot slot = acquire(uri, deadline);
+        requests.incrementAndGet();
+        try {
+            HttpResponse<InputStream> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            InputStream body;
+            try {
+                body = decode(response);
+            } catch (IOException e) {
+                // gzip 头无效时关闭原始响应体，释放连接
+                response.body().close();
+                throw e;
+            }
+            // 读取响应体也受截止时间约束，超时后关闭流让读取线程退出
+            Future<byte[]> read = executor.submit(() -> readUpTo(body, maxBodyBytes));
+            try {
+                byte[] bytes = read.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                bytesReceived.addAndGet(bytes.length);
+                return new Response(response.statusCode(), response.headers(), bytes, response.uri());
+            } catch (TimeoutException e) {
+                body.close();
+                read.cancel(true);
+                throw new HttpTimeoutException("Timed out reading response body from " + uri.getHost());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+            }
+        } catch (HttpTimeoutException e) {
+            timeouts.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting " + url, e);
+        } finally {
+            release(slot);
+        }
+    }
+
+    /**
+     * 发送任意请求，响应体由调用方的 BodyHandler 处理（如直接写入文件）
+     * <p>
+     * 与 get 共享主机并发上限和连接池；请求未设置超时时使用默认截止时间作为响应头的超时。
+     * 响应体是 InputStream（如 BodyHandlers.ofInputStream()）时，数据在调用方读取时才下载，
+     * 主机许可保持到调用方关闭这个流为止，调用方必须关闭响应体。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> HttpResponse<T> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        HttpRequest request = builder.build();
+        if (request.timeout().isEmpty()) {
+            request = HttpRequest.newBuilder(request, (name, value) -> true).timeout(requestTimeout).build();
+        }
+        if (request.headers().firstValue("User-Agent").isEmpty()) {
+            request = HttpRequest.newBuilder(request, (name, value) -> true).header("User-Agent", USER_AGENT).build();
+        }
+        HostSlot slot = acquire(request.uri(), System.nanoTime() + request.timeout().orElse(requestTimeout).toNanos());
+        requests.incrementAndGet();
+        boolean streaming = false;
+        try {
+            HttpResponse<T> response = client.send(request, bodyHandler);
+            if (response.body() instanceof InputStream body) {
+                streaming = true;
+                return new StreamingResponse<>(response, (T) new PermitReleasingInputStream(body, () -> release(slot)));
+            }
+            return response;
+        } catch (HttpTimeoutException e) {
+            timeouts.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting " + request.uri(), e);
+        } finally {
+            if (!streaming) {
+                release(slot);
+            }
+        }
+    }
+
+    public HttpStats getStats() {
+        return new HttpStats(requests.get(), failures.get(), timeouts.get(), bytesReceived.get(), hostSlots.size());
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static void applyHeaders(HttpRequest.Builder builder, Map<String, String> headers) {
+        builder.header("User-Agent", USER_AGENT).header("Accept-Encoding", "gzip");
+        if (headers != null) {
+            headers.forEach(builder::setHeader);
+        }
+    }
+
+    /**
+     * 在截止时间前获取主机的并发许可，获取成功后必须调用 release
+     */
+    private HostSlot acquire(URI uri, long deadline) throws IOException {
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        // 等待中的请求也计入使用数，主机条目在最后一个请求结束前不会被移除
+        HostSlot slot = hostSlots.compute(host, (h, existing) -> {
+            HostSlot retained = existing != null ? existing : new HostSlot(h, new Semaphore(maxConcurrentPerHost, true));
+            retained.users++;
+            return retained;
+        });
+        boolean acquired = false;
+        try {
+            if (!slot.permits.tryAcquire(remainingNanos(uri, deadline), TimeUnit.NANOSECONDS)) {
+                timeouts.incrementAndGet();
+                throw new HttpTimeoutException("Too many concurrent requests to " + host);
+            }
+            acquired = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + host, e);
+        } finally {
+            if (!acquired) {
+                unretain(slot);
+            }
+        }
+        return slot;
+    }
+
+    private void release(HostSlot slot) {
+        slot.permits.release();
+        unretain(slot);
+    }
+
+    private void unretain(HostSlot slot) {
+        hostSlots.computeIfPresent(slot.host, (h, existing) -> --existing.users == 0 ? null : existing);
+    }
+
+    private static long remainingNanos(URI uri, long deadline) throws HttpTimeoutException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new HttpTimeoutException("Request to " + uri.getHost() + " timed out");
+        }
+        return remaining;
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        return "gzip".equalsIgnoreCase(encoding.trim()) ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    /**
+     * 读取最多 maxBytes 个字节，读满后不再继续下载
+     */
+    static byte[] readUpTo(InputStream in, int maxBytes) throws IOException {
+        try (in) {
+            if (maxBytes <= 0) {
+                return in.readAllBytes();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxBytes, 8192));
+            byte[] buffer = new byte[8192];
+            int remaining = maxBytes;
+            int n;
+            while (remaining > 0 && (n = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * HTTP 响应
+     *
+     * @param statusCode 状态码
+     * @param headers    响应头
+     * @param body       响应体（已解压）
+     * @param uri        最终的地址（跟随重定向之后）
+     */
+    public record Response(int statusCode, HttpHeaders headers, byte[] body, URI uri) {
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        /**
+         * Content-Type 中声明的字符集，未声明或不支持时返回 null
+         */
+        public Charset charset() {
+            String contentType = header("Content-Type");
+            if (contentType == null) {
+                return null;
+            }
+            for (String part : contentType.split(";")) {
+                part = part.trim();
+                if (part.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                    try {
+                        return Charset.forName(part.substring("charset=".length()).replace("\"", "").trim());
+                    } catch (Exception e) {
+                        return null;
+                    }
+                }
+            }
+            return null;
+        }
+
+        public String text() {
+            Charset charset = charset();
+            return new String(body, charset == null ? StandardCharsets.UTF_8 : charset);
+        }
+    }
+
+    /**
+     * 主机的并发许可及使用数（持有和等待许可的请求），使用数由 hostSlots 的 compute 保护
+     */
+    private static final class HostSlot {
+
+        private final String host;
+
+        private final Semaphore permits;
+
+        private int users;
+
+        HostSlot(String host, Semaphore permits) {
+            this.host = host;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * 关闭时释放主机许可的响应体，重复关闭只释放一次
+     */
+    private static final class PermitReleasingInputStream extends FilterInputStream {
+
+        private final Runnable release;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PermitReleasingInputStream(InputStream in, Runnable release) {
+            super(in);
+            this.release = release;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    release.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * 替换了响应体的响应，其余部分委托给原响应
+     */
+    private record StreamingResponse<T>(HttpResponse<T> delegate, T body) implements HttpResponse<T> {
+
+        @Override
+        public int statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return delegate.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return delegate.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return delegate.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return delegate.version();
+        }
+    }
+
+    /**
+     * 客户端统计指标
+     *
+     * @param hosts 当前有请求在进行或等待的主机数
+     */
+    public record HttpStats(long requests, long failures, long timeouts, long bytesReceived, int hosts) {
+    }
+}
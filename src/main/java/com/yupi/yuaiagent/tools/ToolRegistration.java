@@ -1,11 +1,14 @@
 package com.yupi.yuaiagent.tools;
 
+import com.yupi.yuaiagent.constant.FileConstant;
 import org.springframework.ai.tool.ToolCallbacks;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /**
  * 集中的工具注册类
  */
@@ -15,12 +18,75 @@ public class ToolRegistration {
     @Value("${search-api.api-key}")
     private String searchApiKey;
 
+    @Value("${tools.web-scraping.max-chars:8000}")
+    private int scrapingMaxChars;
+
+    @Value("${tools.web-scraping.max-body-bytes:2097152}")
+    private int scrapingMaxBodyBytes;
+
+    @Value("${tools.web-scraping.timeout-millis:10000}")
+    private int scrapingTimeoutMillis;
+
+    @Value("${tools.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${tools.cache.default-ttl:30m}")
+    private Duration cacheDefaultTtl;
+
+    @Value("${tools.cache.disk-enabled:false}")
+    private boolean cacheDiskEnabled;
+
+    @Value("${tools.http.connect-timeout:5s}")
+    private Duration httpConnectTimeout;
+
+    @Value("${tools.http.request-timeout:15s}")
+    private Duration httpRequestTimeout;
+
+    @Value("${tools.http.max-concurrent-per-host:4}")
+    private int httpMaxConcurrentPerHost;
+
+    @Value("${tools.download.max-bytes:104857600}")
+    private long downloadMaxBytes;
+
+    @Value("${tools.download.max-concurrent:2}")
+    private int downloadMaxConcurrent;
+
+    @Value("${tools.download.timeout:5m}")
+    private Duration downloadTimeout;
+
+    /**
+     * 搜索、抓取等工具共享的响应缓存
+     */
+    @Bean
+    public ToolResponseCache toolResponseCache() {
+        String diskDir = cacheDiskEnabled ? FileConstant.FILE_SAVE_DIR + "/tool-cache" : null;
+        return new ToolResponseCache(cacheMaxEntries, cacheDefaultTtl, diskDir);
+    }
+
+    /**
+     * 搜索、抓取、下载工具共享的 HTTP 客户端，容器关闭时释放连接
+     */
+    @Bean
+    public ToolHttpClient toolHttpClient() {
+        return new ToolHttpClient(httpConnectTimeout, httpRequestTimeout, httpMaxConcurrentPerHost);
+    }
+
+    /**
+     * 资源下载工具，单独注册以便查看下载统计
+     */
+    @Bean
+    public ResourceDownloadTool resourceDownloadTool(ToolHttpClient toolHttpClient) {
+        return new ResourceDownloadTool(toolHttpClient, FileConstant.FILE_SAVE_DIR + "/download", downloadMaxBytes,
+                downloadMaxConcurrent, downloadTimeout);
+    }
+
     @Bean
-    public ToolCallback[] allTools() {
+    public ToolCallback[] allTools(ToolResponseCache toolResponseCache, ToolHttpClient toolHttpClient,
+                                   ResourceDownloadTool resourceDownloadTool) {
         FileOperationTool fileOperationTool = new FileOperationTool();
-        WebSearchTool webSearchTool = new WebSearchTool(searchApiKey);
-        WebScrapingTool webScrapingTool = new WebScrapingTool();
-        ResourceDownloadTool resourceDownloadTool = new ResourceDownloadTool();
+        WebSearchTool webSearchTool = new WebSearchTool(searchApiKey, toolResponseCache, toolHttpClient);
+        WebScrapingTool webScrapingTool = new WebScrapingTool(scrapingMaxChars, scrapingMaxBodyBytes, scrapingTimeoutMillis,
+                toolResponseCache, toolHttpClient);
         TerminalOperationTool terminalOperationTool = new TerminalOperationTool();
         PDFGenerationTool pdfGenerationTool = new PDFGenerationTool();
         TerminateTool terminateTool = new TerminateTool();
@@ -0,0 +1,273 @@
+package com.yupi.yuaiagent.tools;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 工具响应缓存，由搜索、抓取等工具共享
+ * <p>
+ * 两级缓存：内存中的 LRU 缓存（容量和过期时间淘汰），可选的磁盘缓存（跨重启保留）。
+ * 相同的键同时只有一个请求会真正访问上游，其他并发请求等待并共享这一次的结果；
+ * 加载失败时不缓存，异常直接抛给所有等待的调用方。
+ */
+@Slf4j
+public class ToolResponseCache {
+
+    // 默认内存缓存容量
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    // 默认过期时间
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(30);
+
+    private final LRUCache<String, String> memoryCache;
+
+    // 正在加载中的请求，用于合并并发的相同请求
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    // 磁盘缓存目录，为 null 时不启用
+    private final Path diskDir;
+
+    private final Duration defaultTtl;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * 仅使用内存缓存
+     */
+    public ToolResponseCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL, null);
+    }
+
+    /**
+     * @param maxEntries 内存缓存容量
+     * @param defaultTtl 加载结果未指定过期时间时使用的默认值
+     * @param diskDir    磁盘缓存目录，为 null 时不启用磁盘缓存
+     */
+    public ToolResponseCache(int maxEntries, Duration defaultTtl, String diskDir) {
+        this.memoryCache = CacheUtil.newLRUCache(maxEntries, defaultTtl.toMillis());
+        this.defaultTtl = defaultTtl;
+        this.diskDir = diskDir == null ? null : Paths.get(diskDir);
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 加载（并发的相同请求只加载一次）
+     *
+     * @param namespace 命名空间，区分不同工具
+     * @param key       已归一化的缓存键
+     * @param loader    加载函数，失败时抛出异常
+     * @return 缓存或加载的结果
+     */
+    public String get(String namespace, String key, Supplier<CacheEntry> loader) {
+        String cacheKey = namespace + ":" + key;
+        String value = memoryCache.get(cacheKey, false);
+        if (value != null) {
+            memoryHits.incrementAndGet();
+            return value;
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            // 已有相同请求在加载，等待它的结果
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+        try {
+            value = readDisk(cacheKey);
+            if (value != null) {
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                CacheEntry entry = loader.get();
+                value = entry.value();
+                Duration ttl = entry.ttl() == null ? defaultTtl : entry.ttl();
+                if (ttl.isPositive()) {
+                    memoryCache.put(cacheKey, value, ttl.toMillis());
+                    writeDisk(cacheKey, value, ttl);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * 归一化搜索关键词：去掉首尾空白、合并连续空白、转小写
+     */
+    public static String normalizeQuery(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 归一化 URL：协议和主机名转小写，去掉默认端口、片段和末尾的斜杠
+     */
+    public static String normalizeUrl(String url) {
+        if (url == null) {
+            return "";
+        }
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url.trim();
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + (port == -1 ? "" : ":" + port)
+                    + path + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        } catch (Exception e) {
+            return url.trim();
+        }
+    }
+
+    /**
+     * 根据 Cache-Control 响应头计算过期时间
+     *
+     * @param cacheControl Cache-Control 响应头，可以为 null
+     * @param maxTtl       过期时间上限
+     * @return 过期时间，为 null 表示使用默认值，为 0 表示不缓存
+     */
+    public static Duration ttlFromCacheControl(String cacheControl, Duration maxTtl) {
+        if (cacheControl == null || cacheControl.isBlank()) {
+            return null;
+        }
+        Long maxAge = null;
+        Long sharedMaxAge = null;
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-store") || directive.equals("no-cache") || directive.equals("private")) {
+                return Duration.ZERO;
+            }
+            try {
+                if (directive.startsWith("s-maxage=")) {
+                    sharedMaxAge = Long.parseLong(directive.substring("s-maxage=".length()).replace("\"", ""));
+                } else if (directive.startsWith("max-age=")) {
+                    maxAge = Long.parseLong(directive.substring("max-age=".length()).replace("\"", ""));
+                }
+            } catch (NumberFormatException ignored) {
+                // 非法的值按未指定处理
+            }
+        }
+        // 共享缓存优先使用 s-maxage
+        Long seconds = sharedMaxAge != null ? sharedMaxAge : maxAge;
+        if (seconds == null) {
+            return null;
+        }
+        Duration ttl = Duration.ofSeconds(Math.max(0, seconds));
+        return ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(memoryHits.get(), diskHits.get(), misses.get(), coalesced.get(), memoryCache.size());
+    }
+
+    private Path diskPath(String cacheKey) {
+        return diskDir.resolve(SecureUtil.sha256(cacheKey) + ".cache");
+    }
+
+    /**
+     * 读取磁盘缓存：第一行是过期时间戳，其余是缓存内容
+     */
+    private String readDisk(String cacheKey) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path path = diskPath(cacheKey);
+        try {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            String content = Files.readString(path, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            long expiresAt = Long.parseLong(content.substring(0, newline));
+            long remaining = expiresAt - System.currentTimeMillis();
+            if (remaining <= 0) {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            String value = content.substring(newline + 1);
+            // 回填内存缓存
+            memoryCache.put(cacheKey, value, remaining);
+            return value;
+        } catch (Exception e) {
+            log.warn("读取工具缓存文件失败：{}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入磁盘缓存：先写临时文件再原子替换，避免读到写了一半的文件
+     */
+    private void writeDisk(String cacheKey, String value, Duration ttl) {
+        if (diskDir == null) {
+            return;
+        }
+        Path path = diskPath(cacheKey);
+        try {
+            Files.createDirectories(diskDir);
+            Path tmp = Files.createTempFile(diskDir, "cache", ".tmp");
+            long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+            Files.writeString(tmp, expiresAt + "\n" + value, StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入工具缓存文件失败：{}", path, e);
+        }
+    }
+
+    /**
+     * 加载结果
+     *
+     * @param value 内容
+     * @param ttl   过期时间，为 null 表示使用默认值，为 0 表示不缓存
+     */
+    public record CacheEntry(String value, Duration ttl) {
+
+        public static CacheEntry of(String value) {
+            return new CacheEntry(value, null);
+        }
+    }
+
+    /**
+     * 缓存统计指标
+     */
+    public record CacheStats(long memoryHits, long diskHits, long misses, long coalesced, int size) {
+    }
+}
@@ -1,22 +1,195 @@
 package com.yupi.yuaiagent.tools;
 
+import cn.hutool.core.util.StrUtil;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * 网页抓取工具
+ * <p>
+ * 不直接返回网页的原始 HTML（脚本、样式往往有几百 KB），而是按可读性规则提取正文：
+ * 标题、各级小标题、正文文本和链接列表，并按字符上限截断，大幅缩小返回给大模型的内容。
+ * 通过共享的 HTTP 客户端下载，限制响应体字节数和超时时间，避免超大页面拖慢代理；提取结果按归一化的 URL 缓存。
  */
 public class WebScrapingTool {
 
-    @Tool(description = "Scrape the content of a web page")
+    // 默认返回内容的字符上限
+    private static final int DEFAULT_MAX_CHARS = 8000;
+
+    // 默认下载的响应体字节上限
+    private static final int DEFAULT_MAX_BODY_BYTES = 2 * 1024 * 1024;
+
+    // 默认超时时间（毫秒）
+    private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    // 最多保留的小标题数
+    private static final int MAX_HEADINGS = 20;
+
+    // 最多保留的链接数
+    private static final int MAX_LINKS = 20;
+
+    // 与正文无关、直接移除的元素；页头、页脚只移除站点级的（文章内的 header 往往包含标题），
+    // 不移除 form（ASP.NET WebForms 等页面的整个正文都在一个 form 中）
+    private static final String NOISE_SELECTOR = "script, style, noscript, template, svg, iframe, "
+            + "body > header, body > footer, body > nav, nav, aside, [role=navigation], [role=banner], [role=contentinfo], "
+            + "[role=search], [aria-hidden=true]";
+
+    // 网页的缓存命名空间
+    private static final String CACHE_NAMESPACE = "scrape";
+
+    // 响应头允许的最长缓存时间
+    private static final Duration MAX_CACHE_TTL = Duration.ofHours(1);
+
+    private final int maxChars;
+
+    private final int maxBodyBytes;
+
+    private final int timeoutMillis;
+
+    private final ToolResponseCache cache;
+
+    private final ToolHttpClient httpClient;
+
+    public WebScrapingTool() {
+        this(DEFAULT_MAX_CHARS, DEFAULT_MAX_BODY_BYTES, DEFAULT_TIMEOUT_MILLIS, new ToolResponseCache(), new ToolHttpClient());
+    }
+
+    /**
+     * @param maxChars      返回内容的字符上限
+     * @param maxBodyBytes  下载的响应体字节上限
+     * @param timeoutMillis 连接和读取超时时间（毫秒）
+     * @param cache         共享的工具响应缓存
+     * @param httpClient    共享的 HTTP 客户端
+     */
+    public WebScrapingTool(int maxChars, int maxBodyBytes, int timeoutMillis, ToolResponseCache cache,
+                           ToolHttpClient httpClient) {
+        this.maxChars = maxChars;
+        this.maxBodyBytes = maxBodyBytes;
+        this.timeoutMillis = timeoutMillis;
+        this.cache = cache;
+        this.httpClient = httpClient;
+    }
+
+    @Tool(description = "Scrape a web page and return its title, headings, main text and links")
     public String scrapeWebPage(@ToolParam(description = "URL of the web page to scrape") String url) {
         try {
-            Document document = Jsoup.connect(url).get();
-            return document.html();
+            return cache.get(CACHE_NAMESPACE, ToolResponseCache.normalizeUrl(url), () -> scrape(url));
         } catch (Exception e) {
             return "Error scraping web page: " + e.getMessage();
         }
     }
+
+    /**
+     * 下载并提取网页内容，按 Cache-Control 响应头决定缓存时间
+     */
+    private ToolResponseCache.CacheEntry scrape(String url) {
+        try {
+            ToolHttpClient.Response response = httpClient.get(url, Map.of("Accept", "text/html,application/xhtml+xml"),
+                    maxBodyBytes, Duration.ofMillis(timeoutMillis));
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.statusCode() + " fetching " + url);
+            }
+            // 响应头未声明字符集时由 Jsoup 按 meta 标签识别
+            Charset charset = response.charset();
+            Document document = Jsoup.parse(new ByteArrayInputStream(response.body()),
+                    charset == null ? null : charset.name(), response.uri().toString());
+            String content = extract(document, maxChars);
+            Duration ttl = ToolResponseCache.ttlFromCacheControl(response.header("Cache-Control"), MAX_CACHE_TTL);
+            return new ToolResponseCache.CacheEntry(content, ttl);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 从网页中提取标题、小标题、正文和链接，并按字符上限截断
+     */
+    static String extract(Document document, int maxChars) {
+        document.select(NOISE_SELECTOR).remove();
+        Element content = findMainContent(document);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Title: ").append(document.title()).append("\n");
+        // 小标题
+        Elements headings = content.select("h1, h2, h3");
+        if (!headings.isEmpty()) {
+            sb.append("\nHeadings:\n");
+            headings.stream()
+                    .map(Element::text)
+                    .filter(StrUtil::isNotBlank)
+                    .limit(MAX_HEADINGS)
+                    .forEach(text -> sb.append("- ").append(text).append("\n"));
+        }
+        // 链接（正文文本截断后仍保留，方便代理继续抓取）
+        Set<String> links = new LinkedHashSet<>();
+        for (Element a : content.select("a[href]")) {
+            String href = a.absUrl("href");
+            if (StrUtil.startWithAny(href, "http://", "https://") && links.size() < MAX_LINKS) {
+                links.add(StrUtil.blankToDefault(a.text(), href) + " -> " + href);
+            }
+        }
+        StringBuilder linkPart = new StringBuilder();
+        if (!links.isEmpty()) {
+            linkPart.append("\nLinks:\n");
+            links.forEach(link -> linkPart.append("- ").append(link).append("\n"));
+        }
+        // 正文文本占用剩余的字符预算
+        sb.append("\nContent:\n");
+        int budget = Math.max(0, maxChars - sb.length() - linkPart.length());
+        // 块级元素后补换行，保留段落结构
+        content.select("p, br, li, tr, pre, blockquote, div, h1, h2, h3, h4, h5, h6").after("\n");
+        String text = content.wholeText().replaceAll("[ \\t\\x0B\\f\\r]+", " ").replaceAll("\\s*\\n\\s*", "\n").trim();
+        if (text.length() > budget) {
+            sb.append(text, 0, budget).append("\n...[内容已截断，原文 ").append(text.length()).append(" 字符]\n");
+        } else {
+            sb.append(text).append("\n");
+        }
+        sb.append(linkPart);
+        return sb.toString();
+    }
+
+    /**
+     * 找到正文所在的元素：优先使用语义化标签，否则选择段落文本最多的块
+     */
+    private static Element findMainContent(Document document) {
+        Element semantic = document.selectFirst("article, main, [role=main]");
+        if (semantic != null && semantic.text().length() > 200) {
+            return semantic;
+        }
+        Element best = null;
+        int bestScore = 0;
+        for (Element p : document.select("p")) {
+            Element parent = p.parent();
+            if (parent == null) {
+                continue;
+            }
+            // 以父元素下所有直接段落的文本长度作为得分
+            int score = 0;
+            for (Element child : parent.children()) {
+                if ("p".equals(child.tagName())) {
+                    score += child.text().length();
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = parent;
+            }
+        }
+        if (best != null && bestScore > 200) {
+            return best;
+        }
+        return document.body() != null ? document.body() : document;
+    }
 }
@@ -7,6 +7,9 @@ import cn.hutool.json.JSONUtil;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,34 +23,64 @@ public class WebSearchTool {
     // SearchAPI 的搜索接口地址
     private static final String SEARCH_API_URL = "https://www.searchapi.io/api/v1/search";
 
+    // 搜索结果的缓存命名空间
+    private static final String CACHE_NAMESPACE = "search";
+
     private final String apiKey;
 
+    private final ToolResponseCache cache;
+
+    private final ToolHttpClient httpClient;
+
     public WebSearchTool(String apiKey) {
+        this(apiKey, new ToolResponseCache(), new ToolHttpClient());
+    }
+
+    public WebSearchTool(String apiKey, ToolResponseCache cache, ToolHttpClient httpClient) {
         this.apiKey = apiKey;
+        this.cache = cache;
+        this.httpClient = httpClient;
     }
 
     @Tool(description = "Search for information from Baidu Search Engine")
     public String searchWeb(
             @ToolParam(description = "Search query keyword") String query) {
+        try {
+            // 相同的关键词直接复用缓存结果，节省 SearchAPI 配额
+            return cache.get(CACHE_NAMESPACE, ToolResponseCache.normalizeQuery(query),
+                    () -> ToolResponseCache.CacheEntry.of(search(query)));
+        } catch (Exception e) {
+            return "Error searching Baidu: " + e.getMessage();
+        }
+    }
+
+    private String search(String query) {
         Map<String, Object> paramMap = new HashMap<>();
         paramMap.put("q", query);
         paramMap.put("api_key", apiKey);
         paramMap.put("engine", "baidu");
+        String response = get(HttpUtil.urlWithForm(SEARCH_API_URL, paramMap, StandardCharsets.UTF_8, true));
+        // 取出返回结果的前 5 条
+        JSONObject jsonObject = JSONUtil.parseObj(response);
+        // 提取 organic_results 部分
+        JSONArray organicResults = jsonObject.getJSONArray("organic_results");
+        List<Object> objects = organicResults.subList(0, Math.min(5, organicResults.size()));
+        // 拼接搜索结果为字符串
+        return objects.stream().map(obj -> {
+            JSONObject tmpJSONObject = (JSONObject) obj;
+            return tmpJSONObject.toString();
+        }).collect(Collectors.joining(","));
+    }
+
+    private String get(String url) {
         try {
-            String response = HttpUtil.get(SEARCH_API_URL, paramMap);
-            // 取出返回结果的前 5 条
-            JSONObject jsonObject = JSONUtil.parseObj(response);
-            // 提取 organic_results 部分
-            JSONArray organicResults = jsonObject.getJSONArray("organic_results");
-            List<Object> objects = organicResults.subList(0, 5);
-            // 拼接搜索结果为字符串
-            String result = objects.stream().map(obj -> {
-                JSONObject tmpJSONObject = (JSONObject) obj;
-                return tmpJSONObject.toString();
-            }).collect(Collectors.joining(","));
-            return result;
-        } catch (Exception e) {
-            return "Error searching Baidu: " + e.getMessage();
+            ToolHttpClient.Response response = httpClient.get(url, Map.of("Accept", "application/json"), 0);
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("SearchAPI returned HTTP " + response.statusCode());
+            }
+            return response.text();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
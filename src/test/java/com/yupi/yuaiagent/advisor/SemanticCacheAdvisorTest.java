@@ -0,0 +1,137 @@
+package com.yupi.yuaiagent.advisor;
+
+import com.yupi.yuaiagent.rag.OffHeapVectorIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class SemanticCacheAdvisorTest {
+
+    // 两个措辞不同但语义相近的问题使用几乎相同的向量
+    private static final Map<String, float[]> VECTORS = Map.of(
+            "怎么和喜欢的人开启话题？", new float[]{1f, 0f, 0f},
+            "如何跟暗恋的人开始聊天？", new float[]{0.99f, 0.1f, 0f},
+            "结婚后怎么处理婆媳关系？", new float[]{0f, 0f, 1f});
+
+    @Test
+    void returnsCachedAnswerForSimilarQuestion() {
+        SemanticCacheAdvisor advisor = new SemanticCacheAdvisor(new OffHeapVectorIndex(new FakeEmbeddingModel()),
+                0.9, Duration.ofHours(1), 100, true);
+        CallAroundAdvisorChain chain = Mockito.mock(CallAroundAdvisorChain.class);
+        Mockito.when(chain.nextAroundCall(Mockito.any())).thenAnswer(invocation -> {
+            AdvisedRequest request = invocation.getArgument(0);
+            return response("回答：" + request.userText(), request);
+        });
+        // 首次提问调用大模型并写入缓存
+        AdvisedResponse first = advisor.aroundCall(request("怎么和喜欢的人开启话题？", "系统提示词"), chain);
+        Assertions.assertEquals("回答：怎么和喜欢的人开启话题？", first.response().getResult().getOutput().getText());
+        // 语义相近的问题命中缓存
+        AdvisedResponse second = advisor.aroundCall(request("如何跟暗恋的人开始聊天？", "系统提示词"), chain);
+        Assertions.assertEquals("回答：怎么和喜欢的人开启话题？", second.response().getResult().getOutput().getText());
+        Assertions.assertEquals(true, second.response().getResult().getOutput().getMetadata()
+                .get(SemanticCacheAdvisor.CACHE_HIT_METADATA_KEY));
+        // 不相关的问题、不同的系统提示词都不命中
+        advisor.aroundCall(request("结婚后怎么处理婆媳关系？", "系统提示词"), chain);
+        advisor.aroundCall(request("如何跟暗恋的人开始聊天？", "另一个系统提示词"), chain);
+        Mockito.verify(chain, Mockito.times(3)).nextAroundCall(Mockito.any());
+        SemanticCacheAdvisor.CacheStats stats = advisor.getStats();
+        Assertions.assertEquals(1, stats.hits());
+        Assertions.assertEquals(3, stats.misses());
+        Assertions.assertEquals(3, stats.size());
+    }
+
+    @Test
+    void skipsFollowUpsAndEvictsOldestEntries() {
+        SemanticCacheAdvisor advisor = new SemanticCacheAdvisor(new OffHeapVectorIndex(new FakeEmbeddingModel()),
+                0.9, Duration.ofHours(1), 1, true);
+        CallAroundAdvisorChain chain = Mockito.mock(CallAroundAdvisorChain.class);
+        Mockito.when(chain.nextAroundCall(Mockito.any()))
+                .thenAnswer(invocation -> response("回答", invocation.getArgument(0)));
+        // 带历史消息的追问不参与缓存
+        AdvisedRequest followUp = AdvisedRequest.from(request("怎么和喜欢的人开启话题？", "系统提示词"))
+                .messages(List.of(new UserMessage("之前的问题"), new AssistantMessage("之前的回答")))
+                .build();
+        advisor.aroundCall(followUp, chain);
+        Assertions.assertEquals(0, advisor.getStats().size());
+        // 超出数量上限时淘汰最早的条目
+        advisor.aroundCall(request("怎么和喜欢的人开启话题？", "系统提示词"), chain);
+        advisor.aroundCall(request("结婚后怎么处理婆媳关系？", "系统提示词"), chain);
+        advisor.aroundCall(request("如何跟暗恋的人开始聊天？", "系统提示词"), chain);
+        Mockito.verify(chain, Mockito.times(4)).nextAroundCall(Mockito.any());
+        Assertions.assertEquals(1, advisor.getStats().size());
+        Assertions.assertEquals(2, advisor.getStats().evictions());
+    }
+
+    @Test
+    void doesNotCacheAnswersWhileKnowledgeBaseIsWarming() {
+        AtomicBoolean ready = new AtomicBoolean(false);
+        SemanticCacheAdvisor advisor = new SemanticCacheAdvisor(new OffHeapVectorIndex(new FakeEmbeddingModel()),
+                0.9, Duration.ofHours(1), 100, true, ready::get);
+        CallAroundAdvisorChain chain = Mockito.mock(CallAroundAdvisorChain.class);
+        Mockito.when(chain.nextAroundCall(Mockito.any()))
+                .thenAnswer(invocation -> response(ready.get() ? "回答" : "抱歉，我只能回答恋爱相关的问题", invocation.getArgument(0)));
+        // 预热期间的兜底回答不写入缓存
+        advisor.aroundCall(request("怎么和喜欢的人开启话题？", "系统提示词"), chain);
+        Assertions.assertEquals(0, advisor.getStats().size());
+        // 就绪后相似的问题重新调用大模型并写入缓存
+        ready.set(true);
+        AdvisedResponse answer = advisor.aroundCall(request("如何跟暗恋的人开始聊天？", "系统提示词"), chain);
+        Assertions.assertEquals("回答", answer.response().getResult().getOutput().getText());
+        Assertions.assertEquals(1, advisor.getStats().size());
+        Mockito.verify(chain, Mockito.times(2)).nextAroundCall(Mockito.any());
+    }
+
+    private static AdvisedRequest request(String userText, String systemText) {
+        return AdvisedRequest.builder()
+                .chatModel(Mockito.mock(ChatModel.class))
+                .userText(userText)
+                .systemText(systemText)
+                .adviseContext(new HashMap<>())
+                .build();
+    }
+
+    private static AdvisedResponse response(String answer, AdvisedRequest request) {
+        return new AdvisedResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(answer)))),
+                request.adviseContext());
+    }
+
+    /**
+     * 按文本查表返回向量的嵌入模型
+     */
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(VECTORS.get(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return VECTORS.get(document.getText());
+        }
+    }
+}
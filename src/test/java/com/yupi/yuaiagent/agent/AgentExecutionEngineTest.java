@@ -0,0 +1,36 @@
+package com.yupi.yuaiagent.agent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+class AgentExecutionEngineTest {
+
+    @Test
+    void dropsTenantOnceItsRunsFinish() throws Exception {
+        AgentExecutionEngine engine = new AgentExecutionEngine(10, 1, 100, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = engine.submit("ip:1", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<Void> second = engine.submit("ip:1", () -> {
+        });
+        CompletableFuture<Void> other = engine.submit("ip:2", () -> {
+        });
+        other.get();
+        // 同一租户的第二个任务仍在排队，租户不能被移除
+        Assertions.assertFalse(second.isDone());
+        Assertions.assertEquals(1, engine.tenantCount());
+        release.countDown();
+        CompletableFuture.allOf(first, second).get();
+        Assertions.assertEquals(0, engine.tenantCount());
+        engine.destroy();
+    }
+}
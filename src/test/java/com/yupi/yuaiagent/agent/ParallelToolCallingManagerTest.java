@@ -0,0 +1,131 @@
+package com.yupi.yuaiagent.agent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ParallelToolCallingManagerTest {
+
+    static class SlowTools {
+
+        @Tool(description = "Sleep then echo")
+        public String slowEcho(String text) throws InterruptedException {
+            Thread.sleep(500);
+            return text;
+        }
+    }
+
+    static class StubbornTools {
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        private final AtomicInteger started = new AtomicInteger();
+
+        @Tool(description = "Run a command that ignores interrupts")
+        public String stubbornCommand(String command) {
+            started.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                long end = System.currentTimeMillis() + 600;
+                while (System.currentTimeMillis() < end) {
+                    Thread.onSpinWait();
+                }
+                return command;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    static class SwallowingTools {
+
+        private final AtomicInteger started = new AtomicInteger();
+
+        @Tool(description = "Run a command that swallows interrupts")
+        public String swallowingCommand(String command) {
+            started.incrementAndGet();
+            try {
+                Thread.sleep(600);
+                return command;
+            } catch (InterruptedException e) {
+                // 与捕获 InterruptedException 的终端工具一样，中断标记被清除
+                return "interrupted";
+            }
+        }
+    }
+
+    @Test
+    void remainingSerialCallsAreSkippedWhenAToolSwallowsTheInterrupt() throws Exception {
+        SwallowingTools tools = new SwallowingTools();
+        ParallelToolCallingManager manager = new ParallelToolCallingManager(ToolCallbacks.from(tools),
+                Set.of("swallowingCommand"), 4, Duration.ofMillis(200));
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("1", "function", "swallowingCommand", "{\"command\":\"a\"}"),
+                new AssistantMessage.ToolCall("2", "function", "swallowingCommand", "{\"command\":\"b\"}"),
+                new AssistantMessage.ToolCall("3", "function", "swallowingCommand", "{\"command\":\"c\"}"));
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), toolCalls);
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(assistantMessage)));
+        manager.executeToolCalls(new Prompt(new UserMessage("test")), chatResponse);
+        Thread.sleep(800);
+        Assertions.assertEquals(1, tools.started.get());
+    }
+
+    @Test
+    void serialCallsNeverOverlapWhenOneOverrunsTheDeadline() throws Exception {
+        StubbornTools tools = new StubbornTools();
+        ParallelToolCallingManager manager = new ParallelToolCallingManager(ToolCallbacks.from(tools),
+                Set.of("stubbornCommand"), 4, Duration.ofMillis(200));
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("1", "function", "stubbornCommand", "{\"command\":\"a\"}"),
+                new AssistantMessage.ToolCall("2", "function", "stubbornCommand", "{\"command\":\"b\"}"));
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), toolCalls);
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(assistantMessage)));
+        long start = System.currentTimeMillis();
+        ToolExecutionResult result = manager.executeToolCalls(new Prompt(new UserMessage("test")), chatResponse);
+        long elapsed = System.currentTimeMillis() - start;
+        // 整轮共享一个截止时间，而不是每个调用各等一次
+        Assertions.assertTrue(elapsed < 400, "round should stop at the shared deadline, took " + elapsed + " ms");
+        ToolResponseMessage toolResponseMessage = (ToolResponseMessage) result.conversationHistory().get(2);
+        Assertions.assertTrue(toolResponseMessage.getResponses().stream().allMatch(r -> r.responseData().contains("timed out")));
+        // 第一个命令结束后，第二个命令也不会再开始
+        Thread.sleep(800);
+        Assertions.assertEquals(1, tools.started.get());
+        Assertions.assertEquals(1, tools.maxRunning.get());
+    }
+
+    @Test
+    void executesIndependentCallsInParallelAndKeepsOrder() {
+        ParallelToolCallingManager manager = new ParallelToolCallingManager(ToolCallbacks.from(new SlowTools()),
+                Set.of(), 4, Duration.ofSeconds(10));
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("1", "function", "slowEcho", "{\"text\":\"a\"}"),
+                new AssistantMessage.ToolCall("2", "function", "slowEcho", "{\"text\":\"b\"}"),
+                new AssistantMessage.ToolCall("3", "function", "slowEcho", "{\"text\":\"c\"}"));
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), toolCalls);
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(assistantMessage)));
+        long start = System.currentTimeMillis();
+        ToolExecutionResult result = manager.executeToolCalls(new Prompt(new UserMessage("test")), chatResponse);
+        long elapsed = System.currentTimeMillis() - start;
+        Assertions.assertTrue(elapsed < 1400, "tool calls should run in parallel, took " + elapsed + " ms");
+        ToolResponseMessage toolResponseMessage = (ToolResponseMessage) result.conversationHistory().get(2);
+        List<String> ids = toolResponseMessage.getResponses().stream().map(ToolResponseMessage.ToolResponse::id).toList();
+        Assertions.assertEquals(List.of("1", "2", "3"), ids);
+        Assertions.assertEquals("\"b\"", toolResponseMessage.getResponses().get(1).responseData());
+    }
+}
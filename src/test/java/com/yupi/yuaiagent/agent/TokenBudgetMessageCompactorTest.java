@@ -0,0 +1,47 @@
+package com.yupi.yuaiagent.agent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class TokenBudgetMessageCompactorTest {
+
+    @Test
+    void compactsStaleToolResponsesAndDeduplicatesPrompt() {
+        String nextStepPrompt = "next step";
+        String page = "x".repeat(5000);
+        List<Message> messages = new ArrayList<>();
+        messages.add(new UserMessage("task"));
+        for (int i = 0; i < 4; i++) {
+            messages.add(new UserMessage(nextStepPrompt));
+            messages.add(new AssistantMessage("", Map.of(),
+                    List.of(new AssistantMessage.ToolCall(String.valueOf(i), "function", "scrapeWebPage", "{}"))));
+            messages.add(new ToolResponseMessage(
+                    List.of(new ToolResponseMessage.ToolResponse(String.valueOf(i), "scrapeWebPage", page)), Map.of()));
+        }
+        messages.add(new UserMessage(nextStepPrompt));
+        TokenBudgetMessageCompactor compactor = new TokenBudgetMessageCompactor(100000, 2, 500);
+        List<Message> result = compactor.compact(messages, nextStepPrompt);
+        // 只保留最后一条 nextStepPrompt
+        long prompts = result.stream().filter(m -> nextStepPrompt.equals(m.getText())).count();
+        Assertions.assertEquals(1, prompts);
+        List<String> data = result.stream()
+                .filter(ToolResponseMessage.class::isInstance)
+                .map(m -> ((ToolResponseMessage) m).getResponses().get(0).responseData())
+                .toList();
+        Assertions.assertEquals(4, data.size());
+        Assertions.assertTrue(data.get(0).startsWith("[已压缩，原始内容 5000 字符]"));
+        Assertions.assertEquals(page, data.get(3));
+        // 再次压缩不会叠加前缀
+        List<Message> again = compactor.compact(result, nextStepPrompt);
+        String first = ((ToolResponseMessage) again.get(2)).getResponses().get(0).responseData();
+        Assertions.assertEquals(data.get(0), first);
+    }
+}
@@ -0,0 +1,67 @@
+package com.yupi.yuaiagent.chatmemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class FileBasedChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void addAndGetLastN() {
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString());
+        String chatId = "test";
+        chatMemory.add(chatId, List.of(new UserMessage("你好"), new AssistantMessage("你好，有什么可以帮你？")));
+        chatMemory.add(chatId, List.of(new UserMessage("我叫鱼皮")));
+        List<Message> messages = chatMemory.get(chatId, 2);
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("你好，有什么可以帮你？", messages.get(0).getText());
+        Assertions.assertEquals("我叫鱼皮", messages.get(1).getText());
+        Assertions.assertEquals(3, chatMemory.get(chatId, 10).size());
+        chatMemory.clear(chatId);
+        Assertions.assertTrue(chatMemory.get(chatId, 10).isEmpty());
+    }
+
+    @Test
+    void compactKeepsLatestMessages() {
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString(), 5);
+        String chatId = "compact";
+        for (int i = 0; i < 30; i++) {
+            chatMemory.add(chatId, List.of(new UserMessage("消息" + i)));
+        }
+        List<Message> messages = chatMemory.get(chatId, 100);
+        Assertions.assertTrue(messages.size() <= 10);
+        Assertions.assertEquals("消息29", messages.get(messages.size() - 1).getText());
+    }
+
+    @Test
+    void concurrentConversations() throws InterruptedException {
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            String chatId = "chat" + (i % 4);
+            executor.submit(() -> {
+                for (int j = 0; j < 50; j++) {
+                    chatMemory.add(chatId, List.of(new UserMessage("消息" + j)));
+                    chatMemory.get(chatId, 10);
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(100, chatMemory.get("chat" + i, 1000).size());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.yupi.yuaiagent.chatmemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+class WriteBehindChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void servesFromCacheAndFlushesLater() {
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(tempDir.toString());
+        try (WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(fileBasedChatMemory,
+                10, 20, Duration.ofMinutes(30), Duration.ofHours(1))) {
+            String chatId = "cache";
+            chatMemory.add(chatId, List.of(new UserMessage("你好"), new UserMessage("我叫鱼皮")));
+            List<Message> messages = chatMemory.get(chatId, 10);
+            Assertions.assertEquals(2, messages.size());
+            // 尚未落盘
+            Assertions.assertTrue(fileBasedChatMemory.get(chatId, 10).isEmpty());
+            Assertions.assertEquals(2, chatMemory.getStats().pendingMessages());
+            chatMemory.flushAll();
+            Assertions.assertEquals(2, fileBasedChatMemory.get(chatId, 10).size());
+            Assertions.assertEquals(1, chatMemory.getStats().hits());
+        }
+    }
+
+    @Test
+    void loadsAfterCloseWithoutRejection() {
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(tempDir.toString());
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(fileBasedChatMemory,
+                1, 20, Duration.ofMinutes(30), Duration.ofHours(1));
+        chatMemory.add("a", List.of(new UserMessage("你好")));
+        chatMemory.close();
+        // 关闭过程中到达的请求超出容量时不再提交淘汰任务
+        Assertions.assertDoesNotThrow(() -> chatMemory.get("b", 10));
+    }
+}
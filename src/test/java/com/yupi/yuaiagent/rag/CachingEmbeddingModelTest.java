@@ -0,0 +1,42 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class CachingEmbeddingModelTest {
+
+    @Test
+    void cachesByNormalizedTextAndBatchesMisses() {
+        EmbeddingModel delegate = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(delegate.call(Mockito.any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(new float[]{request.getInstructions().get(i).length()}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        });
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, "text-embedding-v2", 100, null);
+
+        Assertions.assertArrayEquals(new float[]{4}, model.embed("如何表白"));
+        // 首尾空白不同的相同问题命中缓存
+        Assertions.assertArrayEquals(new float[]{4}, model.embed("  如何表白 "));
+        List<float[]> embeddings = model.embed(List.of("如何表白", "怎么约会呢", "怎么约会呢"));
+        Assertions.assertEquals(3, embeddings.size());
+        Assertions.assertArrayEquals(new float[]{5}, embeddings.get(2));
+
+        // 第一次请求 1 条，批量请求只包含 1 条未命中的文本
+        Mockito.verify(delegate, Mockito.times(2)).call(Mockito.argThat(request -> request.getInstructions().size() == 1));
+        CachingEmbeddingModel.CacheStats stats = model.getStats();
+        Assertions.assertEquals(2, stats.memoryHits());
+        Assertions.assertEquals(2, stats.misses());
+    }
+}
@@ -0,0 +1,61 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+class ChineseTextSplitterTest {
+
+    @Test
+    void splitsOnChineseSentencesWithOverlap() {
+        ChineseTextSplitter splitter = new ChineseTextSplitter(20, 10);
+        String text = "第一句话有八个字。第二句话有八个字。第三句话有八个字！第四句话有八个字？";
+        List<String> chunks = splitter.splitText(text);
+        // 每句 9 个 Token，每块最多两句，下一块以上一块的最后一句开头
+        Assertions.assertEquals(List.of(
+                "第一句话有八个字。第二句话有八个字。",
+                "第二句话有八个字。第三句话有八个字！",
+                "第三句话有八个字！第四句话有八个字？"), chunks);
+    }
+
+    @Test
+    void shrinksOverlapSoNoChunkExceedsChunkSize() {
+        ChineseTextSplitter splitter = new ChineseTextSplitter(20, 10);
+        // 第三句 18 个 Token，带上 9 个 Token 的重叠会超出上限，只能单独成块
+        String text = "第一句话有八个字。第二句话有八个字。第三句话比前两句长了很多很多很多。第四句话有八个字？";
+        List<String> chunks = splitter.splitText(text);
+        Assertions.assertEquals(List.of(
+                "第一句话有八个字。第二句话有八个字。",
+                "第三句话比前两句长了很多很多很多。",
+                "第四句话有八个字？"), chunks);
+
+        ChineseTextSplitter defaults = new ChineseTextSplitter(200, 40);
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longText.append("恋爱中的沟通很重要".repeat(1 + i % 17)).append("。");
+        }
+        Assertions.assertTrue(defaults.splitText(longText.toString()).stream()
+                .allMatch(chunk -> TokenEstimator.estimate(chunk) <= 200));
+    }
+
+    @Test
+    void startsNewChunkAtMarkdownHeadings() {
+        ChineseTextSplitter splitter = new ChineseTextSplitter(200, 40);
+        String text = "## 单身篇\n\n如何拓展社交圈？多参加活动。\n\n## 恋爱篇\n\n吵架了怎么办？先冷静下来。\n";
+        Assertions.assertEquals(List.of(
+                "## 单身篇\n\n如何拓展社交圈？多参加活动。",
+                "## 恋爱篇\n\n吵架了怎么办？先冷静下来。"), splitter.splitText(text));
+    }
+
+    @Test
+    void breaksOverlongSentencesAndKeepsMetadata() {
+        ChineseTextSplitter splitter = new ChineseTextSplitter(10, 0);
+        List<Document> chunks = splitter.apply(List.of(new Document("没有标点的一段很长很长很长的中文文本内容", Map.of("status", "单身"))));
+        Assertions.assertEquals(2, chunks.size());
+        Assertions.assertTrue(chunks.stream().allMatch(chunk -> chunk.getText().length() <= 10));
+        Assertions.assertEquals("单身", chunks.get(1).getMetadata().get("status"));
+    }
+}
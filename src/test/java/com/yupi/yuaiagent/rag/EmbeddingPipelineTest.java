@@ -0,0 +1,57 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class EmbeddingPipelineTest {
+
+    @Test
+    void batchesByBudgetAndRetriesFailedBatches() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            documents.add(new Document("恋爱问题" + i));
+        }
+        EmbeddingPipeline pipeline = new EmbeddingPipeline(8000, 25, 4, 3, Duration.ofMillis(10));
+        Assertions.assertEquals(List.of(25, 25, 10), pipeline.toBatches(documents).stream().map(List::size).toList());
+
+        VectorStore vectorStore = Mockito.mock(VectorStore.class);
+        AtomicInteger calls = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            // 第一次调用模拟限流
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("429 Too Many Requests");
+            }
+            return null;
+        }).when(vectorStore).add(Mockito.anyList());
+        EmbeddingPipeline.PipelineStats stats = pipeline.ingest(documents, vectorStore);
+        Assertions.assertEquals(60, stats.chunks());
+        Assertions.assertEquals(3, stats.batches());
+        Assertions.assertEquals(1, stats.retries());
+        Mockito.verify(vectorStore, Mockito.times(4)).add(Mockito.anyList());
+    }
+
+    @Test
+    void failsFastOnNonRetryableErrors() {
+        List<Document> documents = List.of(new Document("恋爱问题"));
+        EmbeddingPipeline pipeline = new EmbeddingPipeline(8000, 25, 4, 3, Duration.ofSeconds(10));
+        VectorStore vectorStore = Mockito.mock(VectorStore.class);
+        Mockito.doThrow(new NonTransientAiException("400 - InvalidParameter"))
+                .when(vectorStore).add(Mockito.anyList());
+        Assertions.assertThrows(RuntimeException.class, () -> pipeline.ingest(documents, vectorStore));
+        Mockito.verify(vectorStore, Mockito.times(1)).add(Mockito.anyList());
+
+        Assertions.assertTrue(EmbeddingPipeline.isRetryable(new NonTransientAiException("429 - Throttling")));
+        Assertions.assertTrue(EmbeddingPipeline.isRetryable(new RuntimeException(new SocketTimeoutException())));
+        Assertions.assertFalse(EmbeddingPipeline.isRetryable(new NonTransientAiException("401 - InvalidApiKey")));
+    }
+}
@@ -0,0 +1,72 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+class HybridDocumentRetrieverTest {
+
+    private static final List<Document> DOCUMENTS = List.of(
+            new Document("a", "单身的人如何拓展社交圈，多参加兴趣活动", Map.of("status", "单身")),
+            new Document("b", "恋爱中因为生活习惯差异引发争吵怎么办", Map.of("status", "恋爱")),
+            new Document("c", "单身时如何主动追求心仪的对象", Map.of("status", "单身",
+                    MyKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY, "表白, 追求")));
+
+    @Test
+    void tokenizesChineseIntoBigrams() {
+        Assertions.assertEquals(List.of("单身", "身的", "的人", "ai", "助手"), Bm25Index.tokenize("单身的人，AI 助手"));
+        Assertions.assertEquals(List.of("爱"), Bm25Index.tokenize("爱"));
+    }
+
+    @Test
+    void lexicalSearchHonoursKeywordsAndFilter() {
+        Bm25Index index = new Bm25Index();
+        index.addAll(DOCUMENTS);
+        // 关键词元数据参与检索
+        Assertions.assertEquals("c", index.search("表白", 3, null).get(0).getId());
+        List<Document> filtered = index.search("如何", 3, new FilterExpressionBuilder().eq("status", "恋爱").build());
+        Assertions.assertTrue(filtered.stream().allMatch(document -> "恋爱".equals(document.getMetadata().get("status"))));
+    }
+
+    @Test
+    void fusesRankingsAndFallsBackToLexicalWhenVectorSearchIsSlow() {
+        Bm25Index index = new Bm25Index();
+        index.addAll(DOCUMENTS);
+        VectorStore vectorStore = Mockito.mock(VectorStore.class);
+        Mockito.when(vectorStore.similaritySearch(Mockito.any(SearchRequest.class)))
+                .thenReturn(List.of(DOCUMENTS.get(2), DOCUMENTS.get(0)));
+        HybridDocumentRetriever retriever = new HybridDocumentRetriever(vectorStore, index, null, 0.5, 2,
+                Duration.ofSeconds(5));
+        // 两路都排在前面的文档融合后排第一
+        List<Document> fused = retriever.retrieve(new Query("如何追求心仪的对象"));
+        Assertions.assertEquals("c", fused.get(0).getId());
+        Assertions.assertEquals(2, fused.size());
+        // 向量检索超时，只返回关键词检索结果
+        Mockito.when(vectorStore.similaritySearch(Mockito.any(SearchRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return List.of(DOCUMENTS.get(1));
+        });
+        HybridDocumentRetriever slowRetriever = new HybridDocumentRetriever(vectorStore, index, null, 0.5, 2,
+                Duration.ofMillis(50));
+        List<Document> lexicalOnly = slowRetriever.retrieve(new Query("生活习惯差异"));
+        Assertions.assertEquals("b", lexicalOnly.get(0).getId());
+    }
+
+    @Test
+    void reciprocalRankFusionRewardsAgreement() {
+        Document a = new Document("a", "a", Map.of());
+        Document b = new Document("b", "b", Map.of());
+        Document c = new Document("c", "c", Map.of());
+        List<Document> fused = HybridDocumentRetriever.fuse(List.of(List.of(a, b), List.of(c, b)), 3, 60);
+        Assertions.assertEquals(List.of("b", "a", "c"), fused.stream().map(Document::getId).toList());
+    }
+}
@@ -0,0 +1,70 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class IncrementalDocumentIngestorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void embedsOnlyTheDeltaAndDeletesRemovedChunks() {
+        Document unchanged = new Document("单身篇内容", Map.of("filename", "单身篇.md"));
+        Document added = new Document("恋爱篇内容", Map.of("filename", "恋爱篇.md"));
+        String unchangedId = IncrementalDocumentIngestor.withContentHash(unchanged).getId();
+        JdbcTemplate jdbcTemplate = mockExistingRows(Map.of(unchangedId, "单身篇.md", "stale-id", "单身篇.md",
+                "other-file-id", "已婚篇.md"));
+        VectorStore vectorStore = Mockito.mock(VectorStore.class);
+
+        IncrementalDocumentIngestor.IngestionResult result = new IncrementalDocumentIngestor(jdbcTemplate, "public.vector_store",
+                new EmbeddingPipeline(8000, 25, 4, 0, Duration.ZERO))
+                .ingest(vectorStore, List.of(unchanged, added, added));
+
+        Assertions.assertEquals(1, result.unchanged());
+        Assertions.assertEquals(1, result.added());
+        Assertions.assertEquals(1, result.deleted());
+        ArgumentCaptor<List<Document>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(vectorStore).add(captor.capture());
+        Assertions.assertEquals("恋爱篇内容", captor.getValue().get(0).getText());
+        Assertions.assertNotNull(captor.getValue().get(0).getMetadata().get(IncrementalDocumentIngestor.CONTENT_HASH_KEY));
+        // 已婚篇本次未加载，不删除它的行
+        Mockito.verify(vectorStore).delete(List.of("stale-id"));
+    }
+
+    @Test
+    void keepsAllRowsWhenNothingWasLoaded() throws Exception {
+        JdbcTemplate jdbcTemplate = mockExistingRows(Map.of("id-1", "单身篇.md"));
+        VectorStore vectorStore = Mockito.mock(VectorStore.class);
+        IncrementalDocumentIngestor.IngestionResult result = new IncrementalDocumentIngestor(jdbcTemplate, "public.vector_store",
+                new EmbeddingPipeline(8000, 25, 4, 0, Duration.ZERO))
+                .ingest(vectorStore, List.of(), Set.of("单身篇.md"));
+        Assertions.assertEquals(0, result.deleted());
+        Mockito.verify(vectorStore, Mockito.never()).delete(Mockito.<List<String>>any());
+    }
+
+    private static JdbcTemplate mockExistingRows(Map<String, String> rows) {
+        JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        Mockito.doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<String, String> row : rows.entrySet()) {
+                ResultSet rs = Mockito.mock(ResultSet.class);
+                Mockito.when(rs.getString(1)).thenReturn(row.getKey());
+                Mockito.when(rs.getString(2)).thenReturn(row.getValue());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(Mockito.anyString(), Mockito.any(RowCallbackHandler.class));
+        return jdbcTemplate;
+    }
+}
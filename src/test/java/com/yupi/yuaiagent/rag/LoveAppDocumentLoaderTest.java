@@ -0,0 +1,71 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+class LoveAppDocumentLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadsFilesystemLocationInStableOrder() throws Exception {
+        Files.writeString(tempDir.resolve("faq-married-wmx.md"), "## 问题一\n\n婆媳关系怎么处理\n\n---\n\n## 问题二\n\n家务怎么分工\n");
+        Files.writeString(tempDir.resolve("x.md"), "短文件名\n");
+        LoveAppDocumentLoader loader = new LoveAppDocumentLoader(new PathMatchingResourcePatternResolver(),
+                new String[]{"file:" + tempDir + "/*.md", " "}, 4);
+        List<Document> documents = loader.loadMarkdowns();
+        Assertions.assertEquals(3, documents.size());
+        Document married = documents.stream().filter(document -> document.getText().contains("婆媳")).findFirst().orElseThrow();
+        Assertions.assertEquals("wm", married.getMetadata().get("status"));
+        Assertions.assertEquals("", documents.get(2).getMetadata().get("status"));
+        // 多次加载的文档顺序一致，快照指纹保持稳定
+        Assertions.assertEquals(SnapshotSimpleVectorStore.fingerprint(documents, "test"),
+                SnapshotSimpleVectorStore.fingerprint(loader.loadMarkdowns(), "test"));
+    }
+
+    @Test
+    void reportsPartialLoadWhenAFileFailsToParse() throws Exception {
+        Files.writeString(tempDir.resolve("good-single.md"), "## 问题\n\n怎么认识新朋友\n");
+        Files.writeString(tempDir.resolve("empty.md"), "");
+        Resource broken = new FileSystemResource(tempDir.resolve("broken.md")) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("disk error");
+            }
+        };
+        // 查找结果中追加一个读取时报错的文件
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver() {
+            @Override
+            public Resource[] getResources(String locationPattern) throws IOException {
+                Resource[] resources = super.getResources(locationPattern);
+                Resource[] withBroken = Arrays.copyOf(resources, resources.length + 1);
+                withBroken[resources.length] = broken;
+                return withBroken;
+            }
+        };
+        LoveAppDocumentLoader loader = new LoveAppDocumentLoader(resolver, new String[]{"file:" + tempDir + "/*.md"}, 2);
+
+        LoveAppDocumentLoader.LoadResult result = loader.load();
+        Assertions.assertTrue(result.partial());
+        Assertions.assertEquals(List.of("broken.md"), result.failures());
+        Assertions.assertEquals(Set.of("good-single.md", "empty.md"), result.completeSources());
+        Assertions.assertEquals(1, result.documents().size());
+        // 严格加载直接报错，不返回缺少文件的结果
+        Assertions.assertThrows(IllegalStateException.class, loader::loadMarkdowns);
+    }
+}
@@ -0,0 +1,21 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.vectorstore.VectorStore;
+
+class LoveAppRagAdvisorCacheTest {
+
+    @Test
+    void buildsOneAdvisorPerStatusWithinTheLimit() {
+        LoveAppRagAdvisorCache cache = new LoveAppRagAdvisorCache(Mockito.mock(VectorStore.class), 2);
+        Advisor single = cache.forStatus("单身");
+        Assertions.assertSame(single, cache.forStatus("单身"));
+        Assertions.assertNotSame(single, cache.forStatus("恋爱"));
+        cache.forStatus("已婚");
+        // 超出上限时淘汰最久未使用的状态
+        Assertions.assertEquals(2, cache.size());
+    }
+}
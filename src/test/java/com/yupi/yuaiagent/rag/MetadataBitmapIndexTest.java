@@ -0,0 +1,43 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.util.BitSet;
+import java.util.Map;
+
+class MetadataBitmapIndexTest {
+
+    @Test
+    void resolvesBooleanCombinationsOfIndexedFields() {
+        MetadataBitmapIndex index = new MetadataBitmapIndex();
+        index.add(0, Map.of("status", "单身", "filename", "a.md"));
+        index.add(1, Map.of("status", "恋爱", "filename", "b.md"));
+        index.add(2, Map.of("status", "已婚", "filename", "c.md"));
+        index.add(3, Map.of("filename", "d.md"));
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        Assertions.assertEquals(BitSet.valueOf(new long[]{0b0001}), index.resolve(b.eq("status", "单身").build(), 4));
+        Assertions.assertEquals(BitSet.valueOf(new long[]{0b0110}), index.resolve(b.in("status", "恋爱", "已婚").build(), 4));
+        // 不等条件包含缺少该字段的文档
+        Assertions.assertEquals(BitSet.valueOf(new long[]{0b1110}), index.resolve(b.ne("status", "单身").build(), 4));
+        Assertions.assertEquals(BitSet.valueOf(new long[]{0b0010}),
+                index.resolve(b.and(b.eq("status", "恋爱"), b.eq("filename", "b.md")).build(), 4));
+        Assertions.assertEquals(BitSet.valueOf(new long[]{0b0011}),
+                index.resolve(new FilterExpressionTextParser().parse("status == '单身' || status == '恋爱'"), 4));
+        // 数值比较等不支持的条件交给调用方逐个求值
+        Assertions.assertNull(index.resolve(b.gt("year", 2020).build(), 4));
+    }
+
+    @Test
+    void stopsIndexingHighCardinalityFields() {
+        MetadataBitmapIndex index = new MetadataBitmapIndex();
+        for (int i = 0; i <= MetadataBitmapIndex.MAX_VALUES_PER_FIELD; i++) {
+            index.add(i, Map.of("filename", i + ".md", "status", "单身"));
+        }
+        Assertions.assertNull(index.resolve(new FilterExpressionBuilder().eq("filename", "1.md").build(), 100));
+        Assertions.assertEquals(MetadataBitmapIndex.MAX_VALUES_PER_FIELD + 1,
+                index.resolve(new FilterExpressionBuilder().eq("status", "单身").build(), 100).cardinality());
+    }
+}
@@ -0,0 +1,54 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+class MyKeywordEnricherTest {
+
+    @Test
+    void batchesShortChunksAndCallsLongOnesSeparately() {
+        ChatModel chatModel = Mockito.mock(ChatModel.class);
+        Mockito.when(chatModel.call(Mockito.anyString())).thenAnswer(invocation -> {
+            String prompt = invocation.getArgument(0);
+            return prompt.startsWith("下面有") ? "[1] 沟通, 约会\n[2] 单身, 社交" : "婚姻, 家庭";
+        });
+        MyKeywordEnricher enricher = new MyKeywordEnricher(chatModel, "qwen-plus", 2, 4, 5, 20, false);
+        List<Document> documents = List.of(
+                new Document("如何和恋人沟通"),
+                new Document("单身如何扩大社交圈"),
+                new Document("婚后如何处理和家人的关系，".repeat(5)));
+        enricher.enrichDocuments(documents);
+        Assertions.assertEquals("沟通, 约会", documents.get(0).getMetadata().get(MyKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        Assertions.assertEquals("单身, 社交", documents.get(1).getMetadata().get(MyKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        Assertions.assertEquals("婚姻, 家庭", documents.get(2).getMetadata().get(MyKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        Mockito.verify(chatModel, Mockito.times(2)).call(Mockito.anyString());
+
+        // 相同内容再次补充时命中缓存，不再调用大模型
+        List<Document> again = List.of(new Document("如何和恋人沟通"));
+        enricher.enrichDocuments(again);
+        Assertions.assertEquals("沟通, 约会", again.get(0).getMetadata().get(MyKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        Mockito.verify(chatModel, Mockito.times(2)).call(Mockito.anyString());
+    }
+
+    @Test
+    void prunesCacheEntriesUnusedByAFullIngest() {
+        ChatModel chatModel = Mockito.mock(ChatModel.class);
+        Mockito.when(chatModel.call(Mockito.anyString())).thenReturn("沟通, 约会");
+        MyKeywordEnricher enricher = new MyKeywordEnricher(chatModel, "qwen-plus", 2, 4, 1, 20, false);
+        enricher.enrichDocuments(List.of(new Document("如何和恋人沟通"), new Document("单身如何扩大社交圈")));
+        Mockito.verify(chatModel, Mockito.times(2)).call(Mockito.anyString());
+
+        // 完整入库只用到其中一个文档，另一个的缓存被清除
+        enricher.beginIngest();
+        enricher.enrichDocuments(List.of(new Document("如何和恋人沟通")));
+        enricher.completeIngest();
+        Mockito.verify(chatModel, Mockito.times(2)).call(Mockito.anyString());
+        enricher.enrichDocuments(List.of(new Document("单身如何扩大社交圈")));
+        Mockito.verify(chatModel, Mockito.times(3)).call(Mockito.anyString());
+    }
+}
@@ -0,0 +1,79 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+class OffHeapVectorIndexTest {
+
+    private static final int DIMENSIONS = 64;
+
+    @Test
+    void findsNearestNeighboursInEveryMode() {
+        Random random = new Random(42);
+        float[][] vectors = new float[3000][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+        }
+        // 查询向量与第 7 个向量几乎相同
+        float[] query = vectors[7].clone();
+        query[0] += 0.01f;
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(embeddingModel.embed(Mockito.anyString())).thenReturn(query);
+        for (OffHeapVectorIndex.Quantization quantization : OffHeapVectorIndex.Quantization.values()) {
+            for (OffHeapVectorIndex.IndexMode mode : OffHeapVectorIndex.IndexMode.values()) {
+                OffHeapVectorIndex index = new OffHeapVectorIndex(embeddingModel, quantization, mode, 8);
+                for (int i = 0; i < vectors.length; i++) {
+                    index.addEmbedded("doc-" + i, "text-" + i, Map.of("status", i % 2 == 0 ? "单身" : "恋爱"), vectors[i]);
+                }
+                List<Document> results = index.similaritySearch(SearchRequest.builder().query("q").topK(3).build());
+                Assertions.assertEquals("doc-7", results.get(0).getId(), quantization + "/" + mode);
+                Assertions.assertTrue(results.get(0).getScore() > 0.99);
+                // 过滤条件：第 7 个向量属于「恋爱」，过滤「单身」后不应出现
+                List<Document> filtered = index.similaritySearch(SearchRequest.builder().query("q").topK(3)
+                        .filterExpression(new FilterExpressionBuilder().eq("status", "单身").build()).build());
+                Assertions.assertTrue(filtered.stream().noneMatch(document -> document.getId().equals("doc-7")));
+                index.delete(List.of("doc-7"));
+                results = index.similaritySearch(SearchRequest.builder().query("q").topK(3).build());
+                Assertions.assertNotEquals("doc-7", results.get(0).getId());
+            }
+        }
+    }
+
+    @Test
+    void spreadsVectorsAcrossSegments() {
+        Random random = new Random(7);
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        for (OffHeapVectorIndex.Quantization quantization : OffHeapVectorIndex.Quantization.values()) {
+            // 每个分段只能放 100 个向量，1500 个向量跨越多个分段，扩容时最后一个分段被重新分配
+            int segmentBytes = 100 * DIMENSIONS * (quantization == OffHeapVectorIndex.Quantization.INT8 ? 1 : Float.BYTES);
+            OffHeapVectorIndex index = new OffHeapVectorIndex(embeddingModel, quantization,
+                    OffHeapVectorIndex.IndexMode.FLAT, 8, segmentBytes);
+            float[][] vectors = new float[1500][DIMENSIONS];
+            for (int i = 0; i < vectors.length; i++) {
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    vectors[i][d] = (float) random.nextGaussian();
+                }
+                index.addEmbedded("doc-" + i, "text-" + i, Map.of(), vectors[i]);
+            }
+            // 删除超过一半触发压缩，向量在分段之间重新排列
+            index.delete(IntStream.range(0, 800).mapToObj(i -> "doc-" + i).toList());
+            for (int i : new int[]{800, 999, 1000, 1499}) {
+                Mockito.when(embeddingModel.embed(Mockito.anyString())).thenReturn(vectors[i]);
+                List<Document> results = index.similaritySearch(SearchRequest.builder().query("q").topK(1).build());
+                Assertions.assertEquals("doc-" + i, results.get(0).getId(), quantization.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class QueryRewriterTest {
+
+    @Test
+    void skipsWellFormedQueriesAndCachesRewrites() {
+        AtomicInteger calls = new AtomicInteger();
+        QueryTransformer transformer = query -> {
+            calls.incrementAndGet();
+            return new Query("如何缓解失恋后的痛苦");
+        };
+        QueryRewriter rewriter = new QueryRewriter(transformer, 100, Duration.ofHours(1), true, 30, Duration.ZERO);
+        // 简洁规范的查询直接跳过
+        Assertions.assertEquals("怎么追求喜欢的人？", rewriter.doQueryRewrite("怎么追求喜欢的人？"));
+        // 口语化的多句查询需要重写，归一化后相同的查询命中缓存
+        String chatty = "嗯，那个我刚分手了。好难受啊，怎么办";
+        Assertions.assertEquals("如何缓解失恋后的痛苦", rewriter.doQueryRewrite(chatty));
+        Assertions.assertEquals("如何缓解失恋后的痛苦", rewriter.doQueryRewrite("  " + chatty + " "));
+        Assertions.assertEquals(1, calls.get());
+        QueryRewriter.RewriteStats stats = rewriter.getStats();
+        Assertions.assertEquals(1, stats.skipped());
+        Assertions.assertEquals(1, stats.rewritten());
+        Assertions.assertEquals(1, stats.cacheHits());
+    }
+
+    @Test
+    void fallsBackToOriginalQueryAfterDeadline() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        QueryTransformer slowTransformer = query -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Query("重写后的查询");
+        };
+        QueryRewriter rewriter = new QueryRewriter(slowTransformer, 100, Duration.ofHours(1), false, 30,
+                Duration.ofMillis(50));
+        Assertions.assertEquals("原始查询", rewriter.doQueryRewrite("原始查询"));
+        Assertions.assertEquals(1, rewriter.getStats().timeouts());
+        // 后台完成的重写结果写入缓存，下次直接使用
+        release.countDown();
+        long waitUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (rewriter.getStats().size() == 0 && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals("重写后的查询", rewriter.doQueryRewrite("原始查询"));
+    }
+
+    @Test
+    void detectsWellFormedQueries() {
+        Assertions.assertTrue(QueryRewriter.isWellFormed("异地恋如何维持感情？", 30));
+        Assertions.assertFalse(QueryRewriter.isWellFormed("我们吵架了。他不理我", 30));
+        Assertions.assertFalse(QueryRewriter.isWellFormed("额 怎么办", 30));
+        Assertions.assertFalse(QueryRewriter.isWellFormed("", 30));
+    }
+}
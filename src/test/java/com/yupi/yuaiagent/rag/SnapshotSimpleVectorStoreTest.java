@@ -0,0 +1,71 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class SnapshotSimpleVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void savesAndLoadsBinarySnapshot() throws Exception {
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(embeddingModel.embed(Mockito.any(Document.class))).thenReturn(new float[]{0.1f, 0.2f, 0.3f});
+        Mockito.when(embeddingModel.embed(Mockito.anyString())).thenReturn(new float[]{0.1f, 0.2f, 0.3f});
+        List<Document> documents = List.of(
+                new Document("恋爱常见问题", Map.of("status", "恋爱", "excerpt_keywords", "沟通,约会")),
+                new Document("单身常见问题", Map.of("status", "单身")));
+        String fingerprint = SnapshotSimpleVectorStore.fingerprint(documents, "embedding=test");
+        Path path = tempDir.resolve("store.snapshot");
+
+        SnapshotSimpleVectorStore store = new SnapshotSimpleVectorStore(embeddingModel);
+        store.add(documents);
+        store.saveSnapshot(path, fingerprint);
+
+        SnapshotSimpleVectorStore loaded = new SnapshotSimpleVectorStore(embeddingModel);
+        Assertions.assertFalse(loaded.loadSnapshot(path, "other"));
+        Assertions.assertTrue(loaded.loadSnapshot(path, fingerprint));
+        List<Document> results = loaded.similaritySearch(SearchRequest.builder().query("恋爱").topK(5).build());
+        Assertions.assertEquals(2, results.size());
+        Document first = results.stream().filter(d -> d.getText().equals("恋爱常见问题")).findFirst().orElseThrow();
+        Assertions.assertEquals("沟通,约会", first.getMetadata().get("excerpt_keywords"));
+    }
+
+    @Test
+    void filteredSearchOnlyScoresMatchingPartition() {
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(embeddingModel.embed(Mockito.any(Document.class))).thenAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            return document.getText().startsWith("恋爱") ? new float[]{1f, 0f} : new float[]{0.8f, 0.6f};
+        });
+        Mockito.when(embeddingModel.embed(Mockito.anyString())).thenReturn(new float[]{1f, 0f});
+        SnapshotSimpleVectorStore store = new SnapshotSimpleVectorStore(embeddingModel);
+        store.add(List.of(
+                new Document("恋爱常见问题", Map.of("status", "恋爱")),
+                new Document("单身常见问题", Map.of("status", "单身")),
+                new Document("已婚常见问题", Map.of("status", "已婚"))));
+        List<Document> results = store.similaritySearch(SearchRequest.builder().query("问题").topK(5)
+                .filterExpression(new FilterExpressionBuilder().in("status", "单身", "已婚").build()).build());
+        // 两个匹配的文档得分相同，顺序不固定
+        Assertions.assertEquals(Set.of("单身常见问题", "已婚常见问题"), results.stream().map(Document::getText).collect(Collectors.toSet()));
+        Assertions.assertEquals(0.8, results.get(0).getScore(), 1e-6);
+        // 新增内容后分区随之更新
+        store.add(List.of(new Document("单身补充问题", Map.of("status", "单身"))));
+        results = store.similaritySearch(SearchRequest.builder().query("问题").topK(5)
+                .filterExpression(new FilterExpressionBuilder().ne("status", "恋爱").build()).build());
+        Assertions.assertEquals(3, results.size());
+    }
+}
@@ -0,0 +1,75 @@
+package com.yupi.yuaiagent.rag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 切分器基准测试：原来的 TokenTextSplitter 配置与 ChineseTextSplitter 对比
+ * 运行方式：mvn test-compile 后执行本类的 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSplitterBenchmark {
+
+    private List<Document> documents;
+
+    private TokenTextSplitter tokenTextSplitter;
+
+    private ChineseTextSplitter chineseTextSplitter;
+
+    @Setup
+    public void setUp() {
+        // 模拟恋爱问答知识库：每个文档若干个带标题的问答
+        documents = new ArrayList<>();
+        for (int d = 0; d < 100; d++) {
+            StringBuilder text = new StringBuilder();
+            for (int q = 0; q < 10; q++) {
+                text.append("## 问题").append(q).append("：恋爱中对方总是不回消息怎么办？\n\n");
+                for (int s = 0; s < 8; s++) {
+                    text.append("首先要理解对方可能在忙工作或学习，不要急于下结论。")
+                            .append("可以找一个双方都放松的时间，坦诚地聊一聊彼此对回复消息的期待！");
+                }
+                text.append("\n\n");
+            }
+            documents.add(new Document(text.toString(), Map.of("status", "恋爱")));
+        }
+        tokenTextSplitter = new TokenTextSplitter(200, 100, 10, 5000, true);
+        chineseTextSplitter = new ChineseTextSplitter(200, 40);
+    }
+
+    @Benchmark
+    public List<Document> tokenTextSplitter() {
+        return tokenTextSplitter.apply(documents);
+    }
+
+    @Benchmark
+    public List<Document> chineseTextSplitter() {
+        return chineseTextSplitter.apply(documents);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TextSplitterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,58 @@
+package com.yupi.yuaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class WarmingVectorStoreTest {
+
+    @Test
+    void degradesToEmptyResultsUntilReady() throws Exception {
+        VectorStore delegate = Mockito.mock(VectorStore.class);
+        Document document = new Document("恋爱常见问题");
+        Mockito.when(delegate.similaritySearch(Mockito.any(SearchRequest.class))).thenReturn(List.of(document));
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            WarmingVectorStore store = new WarmingVectorStore("test", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return delegate;
+            }, executor, Duration.ofMillis(50));
+            // 预热中的检索等待时限后返回空结果
+            Assertions.assertEquals(WarmingVectorStore.State.WARMING, store.getState());
+            Assertions.assertTrue(store.similaritySearch(SearchRequest.builder().query("恋爱").build()).isEmpty());
+            // 写入等到就绪后执行
+            Thread writer = Thread.ofVirtual().start(() -> store.add(List.of(document)));
+            release.countDown();
+            writer.join();
+            Mockito.verify(delegate).add(List.of(document));
+            Assertions.assertEquals(WarmingVectorStore.State.READY, store.getState());
+            Assertions.assertEquals(List.of(document), store.similaritySearch(SearchRequest.builder().query("恋爱").build()));
+        }
+    }
+
+    @Test
+    void reportsFailedWarmup() {
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            WarmingVectorStore store = new WarmingVectorStore("test", () -> {
+                throw new IllegalStateException("嵌入服务不可用");
+            }, executor, Duration.ofMillis(50));
+            Assertions.assertTrue(store.similaritySearch(SearchRequest.builder().query("恋爱").build()).isEmpty());
+            Assertions.assertEquals(WarmingVectorStore.State.FAILED, store.getState());
+            Assertions.assertTrue(store.getReadiness().error().contains("嵌入服务不可用"));
+            Assertions.assertThrows(IllegalStateException.class, () -> store.delete(List.of("id")));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.yupi.yuaiagent.tools;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class ResourceDownloadToolTest {
+
+    private static final byte[] CONTENT = new byte[300 * 1024];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) (i * 31);
+        }
+    }
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<String> etag = new AtomicReference<>("\"v1\"");
+
+    private ToolHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 支持 Range 请求的静态文件
+        server.createContext("/file.bin", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("ETag", etag.get());
+            if (etag.get().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            if (range != null) {
+                ranges.add(range);
+                start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + start + "-" + (CONTENT.length - 1) + "/" + CONTENT.length);
+            }
+            exchange.sendResponseHeaders(range == null ? 200 : 206, CONTENT.length - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(CONTENT, start, CONTENT.length - start);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        httpClient = new ToolHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private ResourceDownloadTool newTool(long maxBytes) {
+        return new ResourceDownloadTool(httpClient, tempDir.toString(), maxBytes, 2, Duration.ofSeconds(10));
+    }
+
+    @Test
+    void reusesStoredCopyOnlyWhenNotModified() throws Exception {
+        ResourceDownloadTool tool = newTool(1024 * 1024);
+        String first = tool.downloadResource(baseUrl + "/file.bin", "a.bin");
+        String second = tool.downloadResource(baseUrl + "/file.bin", "b.bin");
+        Assertions.assertTrue(first.startsWith("Resource downloaded successfully"), first);
+        Assertions.assertTrue(second.contains("not modified"), second);
+        Assertions.assertEquals(2, requests.get());
+        Assertions.assertArrayEquals(CONTENT, Files.readAllBytes(tempDir.resolve("a.bin")));
+        Assertions.assertArrayEquals(CONTENT, Files.readAllBytes(tempDir.resolve("b.bin")));
+        Assertions.assertEquals(1, tool.getStats().revalidated());
+        Assertions.assertEquals(1, tool.getStats().downloads());
+    }
+
+    @Test
+    void downloadedFilesAreIndependentWritableCopies() throws Exception {
+        ResourceDownloadTool tool = newTool(1024 * 1024);
+        tool.downloadResource(baseUrl + "/file.bin", "a.bin");
+        tool.downloadResource(baseUrl + "/file.bin", "b.bin");
+        Path a = tempDir.resolve("a.bin");
+        Assertions.assertTrue(Files.isWritable(a));
+        Files.write(a, new byte[]{1, 2, 3});
+        // 修改一个下载的文件不影响另一个，再次下载同名文件可以覆盖
+        Assertions.assertArrayEquals(CONTENT, Files.readAllBytes(tempDir.resolve("b.bin")));
+        String again = tool.downloadResource(baseUrl + "/file.bin", "a.bin");
+        Assertions.assertTrue(again.startsWith("Resource downloaded successfully"), again);
+        Assertions.assertArrayEquals(CONTENT, Files.readAllBytes(a));
+    }
+
+    @Test
+    void redownloadsWhenResourceChanged() throws Exception {
+        ResourceDownloadTool tool = newTool(1024 * 1024);
+        tool.downloadResource(baseUrl + "/file.bin", "a.bin");
+        etag.set("\"v2\"");
+        String second = tool.downloadResource(baseUrl + "/file.bin", "b.bin");
+        Assertions.assertFalse(second.contains("reused"), second);
+        Assertions.assertEquals(2, tool.getStats().downloads());
+        // 内容没有变化，按内容摘要仍只存一份
+        Assertions.assertEquals(1, tool.getStats().deduplicated());
+        Assertions.assertArrayEquals(CONTENT, Files.readAllBytes(tempDir.resolve("b.bin")));
+    }
+
+    @Test
+    void resumesPartialDownloadWithRange() throws Exception {
+        ResourceDownloadTool tool = newTool(1024 * 1024);
+        Path part = tool.partialPath(baseUrl + "/file.bin");
+        Files.createDirectories(part.getParent());
+        Files.write(part, Arrays.copyOf(CONTENT, 1000));
+        String result = tool.downloadResource(baseUrl + "/file.bin", "c.bin");
+        Assertions.assertTrue(result.contains("resumed from byte 1000"), result);
+        Assertions.assertEquals(List.of("bytes=1000-"), ranges);
+        Assertions.assertArrayEquals(CONTENT, Files.readAllBytes(tempDir.resolve("c.bin")));
+        Assertions.assertFalse(Files.exists(part));
+    }
+
+    @Test
+    void rejectsResourcesOverTheSizeLimit() {
+        ResourceDownloadTool tool = newTool(100 * 1024);
+        String result = tool.downloadResource(baseUrl + "/file.bin", "d.bin");
+        Assertions.assertTrue(result.startsWith("Error downloading resource"), result);
+        Assertions.assertFalse(Files.exists(tempDir.resolve("d.bin")));
+        Assertions.assertEquals(1, tool.getStats().rejected());
+    }
+
+    @Test
+    void keepsFilesInsideTheDownloadDirectory() {
+        String result = newTool(1024 * 1024).downloadResource(baseUrl + "/file.bin", "../../escape.bin");
+        Assertions.assertTrue(result.startsWith("Resource downloaded successfully"), result);
+        Assertions.assertTrue(Files.exists(tempDir.resolve("escape.bin")));
+    }
+}
@@ -0,0 +1,129 @@
+package com.yupi.yuaiagent.tools;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+class ToolHttpClientTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("恋爱技巧".repeat(100).getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(compressed.toByteArray());
+            }
+        });
+        server.createContext("/bad-gzip", exchange -> {
+            byte[] plain = "不是 gzip".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, plain.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(plain);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void decompressesGzipAndTruncatesBody() throws Exception {
+        try (ToolHttpClient client = new ToolHttpClient()) {
+            ToolHttpClient.Response response = client.get(baseUrl + "/gzip", Map.of(), 0);
+            Assertions.assertTrue(response.isSuccessful());
+            Assertions.assertEquals("恋爱技巧".repeat(100), response.text());
+            ToolHttpClient.Response truncated = client.get(baseUrl + "/gzip", Map.of(), 12);
+            Assertions.assertEquals("恋爱技巧", truncated.text());
+        }
+    }
+
+    @Test
+    void slowHostTimesOutAndDoesNotTakeMorePermits() throws Exception {
+        try (ToolHttpClient client = new ToolHttpClient(Duration.ofSeconds(1), Duration.ofMillis(300), 1)) {
+            Thread blocked = Thread.ofVirtual().start(() -> {
+                try {
+                    client.get(baseUrl + "/slow", Map.of(), 0, Duration.ofSeconds(5));
+                } catch (Exception ignored) {
+                }
+            });
+            Thread.sleep(100);
+            // 唯一的许可被占用，第二个请求在截止时间内拿不到许可
+            Assertions.assertThrows(HttpTimeoutException.class, () -> client.get(baseUrl + "/slow", Map.of(), 0));
+            release.countDown();
+            blocked.join();
+            Assertions.assertTrue(client.getStats().timeouts() >= 1);
+        }
+    }
+
+    @Test
+    void streamingBodyHoldsHostPermitUntilClosed() throws Exception {
+        try (ToolHttpClient client = new ToolHttpClient(Duration.ofSeconds(1), Duration.ofMillis(300), 1)) {
+            HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/gzip")),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            // 响应体未关闭前，唯一的许可仍被占用
+            Assertions.assertThrows(HttpTimeoutException.class, () -> client.get(baseUrl + "/gzip", Map.of(), 0));
+            Assertions.assertEquals(1, client.getStats().hosts());
+            try (InputStream body = response.body()) {
+                Assertions.assertTrue(body.readAllBytes().length > 0);
+            }
+            Assertions.assertTrue(client.get(baseUrl + "/gzip", Map.of(), 0).isSuccessful());
+            // 没有请求的主机不再保留许可
+            Assertions.assertEquals(0, client.getStats().hosts());
+        }
+    }
+
+    @Test
+    void invalidGzipFailsAndReleasesPermit() throws Exception {
+        try (ToolHttpClient client = new ToolHttpClient(Duration.ofSeconds(1), Duration.ofMillis(300), 1)) {
+            Assertions.assertThrows(IOException.class, () -> client.get(baseUrl + "/bad-gzip", Map.of(), 0));
+            Assertions.assertTrue(client.get(baseUrl + "/gzip", Map.of(), 0).isSuccessful());
+            Assertions.assertEquals(1, client.getStats().failures());
+        }
+    }
+}
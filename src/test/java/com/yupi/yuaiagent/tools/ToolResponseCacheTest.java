@@ -0,0 +1,53 @@
+package com.yupi.yuaiagent.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ToolResponseCacheTest {
+
+    @Test
+    void coalescesConcurrentIdenticalLookups() {
+        ToolResponseCache cache = new ToolResponseCache();
+        AtomicInteger loads = new AtomicInteger();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> cache.get("search",
+                        ToolResponseCache.normalizeQuery("  恋爱   技巧 "), () -> {
+                            loads.incrementAndGet();
+                            try {
+                                Thread.sleep(300);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return ToolResponseCache.CacheEntry.of("result");
+                        }), executor));
+            }
+        }
+        futures.forEach(future -> Assertions.assertEquals("result", future.join()));
+        Assertions.assertEquals(1, loads.get());
+        // 之后的请求直接命中内存缓存
+        Assertions.assertEquals("result", cache.get("search", "恋爱 技巧", () -> {
+            throw new IllegalStateException("should hit cache");
+        }));
+    }
+
+    @Test
+    void honorsCacheControlAndNormalizesUrl() {
+        Duration max = Duration.ofHours(1);
+        Assertions.assertEquals(Duration.ZERO, ToolResponseCache.ttlFromCacheControl("private, max-age=60", max));
+        Assertions.assertEquals(Duration.ofSeconds(60), ToolResponseCache.ttlFromCacheControl("max-age=600, s-maxage=60", max));
+        Assertions.assertEquals(max, ToolResponseCache.ttlFromCacheControl("max-age=86400", max));
+        Assertions.assertNull(ToolResponseCache.ttlFromCacheControl(null, max));
+        Assertions.assertEquals("https://example.com/a?x=1",
+                ToolResponseCache.normalizeUrl("HTTPS://Example.COM:443/a/?x=1#top"));
+    }
+}
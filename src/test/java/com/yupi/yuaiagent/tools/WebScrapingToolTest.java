@@ -0,0 +1,41 @@
+package com.yupi.yuaiagent.tools;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class WebScrapingToolTest {
+
+    @Test
+    void extractsMainContentWithinBudget() {
+        String paragraph = "<p>" + "恋爱中的沟通非常重要。".repeat(40) + "</p>";
+        String html = "<html><head><title>恋爱技巧</title><script>var x = 1;</script><style>p{}</style></head><body>"
+                + "<nav><a href='/home'>首页</a></nav>"
+                + "<article><h1>如何沟通</h1>" + paragraph + paragraph
+                + "<a href='https://example.com/more'>更多</a></article>"
+                + "<footer>版权所有</footer></body></html>";
+        Document document = Jsoup.parse(html, "https://example.com/");
+        String result = WebScrapingTool.extract(document, 600);
+        Assertions.assertTrue(result.startsWith("Title: 恋爱技巧"));
+        Assertions.assertTrue(result.contains("- 如何沟通"));
+        Assertions.assertTrue(result.contains("更多 -> https://example.com/more"));
+        Assertions.assertTrue(result.contains("内容已截断"));
+        Assertions.assertFalse(result.contains("var x"));
+        Assertions.assertFalse(result.contains("版权所有"));
+        Assertions.assertTrue(result.length() < 700);
+    }
+
+    @Test
+    void keepsArticleHeadersAndFormWrappedPages() {
+        String paragraph = "<p>" + "表单页面中的正文内容。".repeat(30) + "</p>";
+        String html = "<html><head><title>WebForms</title></head><body>"
+                + "<header>站点导航栏</header>"
+                + "<form id='aspnetForm'><article><header><h1>文章标题</h1></header>" + paragraph + "</article></form>"
+                + "</body></html>";
+        String result = WebScrapingTool.extract(Jsoup.parse(html, "https://example.com/"), 2000);
+        Assertions.assertTrue(result.contains("- 文章标题"));
+        Assertions.assertTrue(result.contains("表单页面中的正文内容"));
+        Assertions.assertFalse(result.contains("站点导航栏"));
+    }
+}